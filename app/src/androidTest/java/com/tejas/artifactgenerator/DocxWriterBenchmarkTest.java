@@ -0,0 +1,180 @@
+package com.tejas.artifactgenerator;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.apache.poi.util.Units;
+import org.apache.poi.xwpf.usermodel.*;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STBorder;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the previous XWPF assembly with {@link DocxWriter} on the same staged JPEGs.
+ * Timings go to logcat under "DocxBenchmark"; the assertions only check that both
+ * outputs open and contain every picture.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DocxWriterBenchmarkTest {
+
+    private static final String TAG = "DocxBenchmark";
+    private static final int STEPS = 20;
+    private static final int IMAGES_PER_STEP = 2;
+    private static final int ROUNDS = 3;
+
+    private File workDir;
+    private final List<File> images = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        workDir = new File(context.getCacheDir(), "docx_benchmark");
+        workDir.mkdirs();
+
+        // Noisy 900x1200 frames so the JPEGs are realistically sized
+        Random random = new Random(42);
+        Bitmap bitmap = Bitmap.createBitmap(900, 1200, Bitmap.Config.ARGB_8888);
+        for (int i = 0; i < STEPS * IMAGES_PER_STEP; i++) {
+            for (int y = 0; y < bitmap.getHeight(); y += 4) {
+                for (int x = 0; x < bitmap.getWidth(); x += 4) {
+                    bitmap.setPixel(x, y, Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+                }
+            }
+            File file = new File(workDir, "image" + i + ".jpg");
+            try (OutputStream out = new FileOutputStream(file)) {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, 40, out);
+            }
+            images.add(file);
+        }
+        bitmap.recycle();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = workDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        workDir.delete();
+    }
+
+    @Test
+    public void docxWriterVersusXwpf() throws Exception {
+        File poiOut = new File(workDir, "poi.docx");
+        File nativeOut = new File(workDir, "native.docx");
+
+        // Warm-up round also covers class loading, which is part of the first-tap cost
+        long poiFirst = time(() -> writeWithPoi(poiOut));
+        long nativeFirst = time(() -> writeWithDocxWriter(nativeOut));
+
+        long poiTotal = 0;
+        long nativeTotal = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            poiTotal += time(() -> writeWithPoi(poiOut));
+            nativeTotal += time(() -> writeWithDocxWriter(nativeOut));
+        }
+
+        Log.i(TAG, "First run: XWPF " + poiFirst + " ms, DocxWriter " + nativeFirst + " ms");
+        Log.i(TAG, "Average: XWPF " + (poiTotal / ROUNDS) + " ms, DocxWriter " + (nativeTotal / ROUNDS) + " ms");
+        Log.i(TAG, "Size: XWPF " + poiOut.length() + " B, DocxWriter " + nativeOut.length() + " B");
+
+        try (XWPFDocument poiDoc = new XWPFDocument(OPCPackage.open(poiOut));
+             XWPFDocument nativeDoc = new XWPFDocument(OPCPackage.open(nativeOut))) {
+            assertEquals(images.size(), poiDoc.getAllPictures().size());
+            assertEquals(images.size(), nativeDoc.getAllPictures().size());
+            assertEquals(poiDoc.getTables().get(0).getRow(0).getCell(1).getText(),
+                    nativeDoc.getTables().get(0).getRow(0).getCell(1).getText());
+        }
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    private static long time(Task task) throws Exception {
+        long start = SystemClock.elapsedRealtime();
+        task.run();
+        return SystemClock.elapsedRealtime() - start;
+    }
+
+    // The assembly generateWordDocument used before DocxWriter
+    private void writeWithPoi(File output) throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFTable table = document.createTable(7, 2);
+            table.setWidth("100%");
+            String[] labels = {
+                    "TCERID", "Title", "Card No", "Login Details", "Device ID", "Pre-requisites", "Comments"
+            };
+            for (int i = 0; i < labels.length; i++) {
+                table.getRow(i).getCell(0).setText(labels[i]);
+                table.getRow(i).getCell(1).setText(i == 0 ? "SIS-1234" : "");
+            }
+            for (XWPFTableRow row : table.getRows()) {
+                for (XWPFTableCell cell : row.getTableCells()) {
+                    cell.getCTTc().addNewTcPr().addNewTcBorders().addNewBottom().setVal(STBorder.SINGLE);
+                }
+            }
+            document.createParagraph().setPageBreak(true);
+
+            for (int step = 0; step < STEPS; step++) {
+                XWPFRun stepRun = document.createParagraph().createRun();
+                stepRun.setBold(true);
+                stepRun.setFontSize(14);
+                stepRun.setText("Step " + (step + 1));
+                for (int i = 0; i < IMAGES_PER_STEP; i++) {
+                    XWPFParagraph imagePara = document.createParagraph();
+                    imagePara.setAlignment(ParagraphAlignment.CENTER);
+                    byte[] data = Files.readAllBytes(images.get(step * IMAGES_PER_STEP + i).toPath());
+                    try (InputStream is = new ByteArrayInputStream(data)) {
+                        imagePara.createRun().addPicture(is, Document.PICTURE_TYPE_JPEG, "step_image.jpg",
+                                (int) (3.0 * Units.EMU_PER_INCH), (int) (4.0 * Units.EMU_PER_INCH));
+                    }
+                }
+                document.createParagraph().setPageBreak(true);
+            }
+
+            try (OutputStream out = new FileOutputStream(output)) {
+                document.write(out);
+            }
+        }
+    }
+
+    private void writeWithDocxWriter(File output) throws Exception {
+        try (DocxWriter writer = new DocxWriter(new FileOutputStream(output))) {
+            Map<CoverPageTemplate.Field, String> values = new EnumMap<>(CoverPageTemplate.Field.class);
+            values.put(CoverPageTemplate.Field.TCERID, "SIS-1234");
+            writer.addCoverPage(values);
+            writer.addPageBreak();
+
+            for (int step = 0; step < STEPS; step++) {
+                writer.addHeading("Step " + (step + 1));
+                for (int i = 0; i < IMAGES_PER_STEP; i++) {
+                    writer.addPicture(images.get(step * IMAGES_PER_STEP + i), DocxWriter.PictureType.JPEG,
+                            "step_image.jpg", 3 * DocxWriter.EMU_PER_INCH, 4 * DocxWriter.EMU_PER_INCH);
+                }
+                writer.addPageBreak();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.tejas.artifactgenerator;
+
+import android.app.Application;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Holds services that should outlive any one activity. The OCR recognizer is warmed
+ * here so its model is loaded while the user is still on the login and session screens,
+ * and document generation lives here so a rotation does not cancel a running one.
+ */
+public class ArtifactApplication extends Application {
+
+    // Entries are a few kilobytes each, so this holds thousands of captures
+    private static final long OCR_CACHE_MAX_BYTES = 8L * 1024 * 1024;
+    private static final long TRANSCODE_CACHE_MAX_BYTES = 256L * 1024 * 1024;
+    // Room for one full-resolution overlay image plus a few transcode buffers
+    private static final long BITMAP_POOL_MAX_BYTES = 64L * 1024 * 1024;
+
+    private ArtifactDatabase artifactDatabase;
+    private OcrService ocrService;
+    private FieldExtractor fieldExtractor;
+    private BitmapPool bitmapPool;
+    private ImageTranscoder imageTranscoder;
+    private DocumentGenerator documentGenerator;
+    private CapturePreprocessor capturePreprocessor;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // One helper, so every activity instance and store writes through the same connection
+        artifactDatabase = new ArtifactDatabase(this);
+        OcrCache ocrCache = new OcrCache(new File(getFilesDir(), "ocr_cache"), OCR_CACHE_MAX_BYTES);
+        ocrService = new OcrService(this, ocrCache);
+        ocrService.warmUp();
+        fieldExtractor = new FieldExtractor(
+                Arrays.asList(getResources().getStringArray(R.array.test_case_id_patterns)));
+        TranscodeCache transcodeCache = new TranscodeCache(
+                getExternalFilesDir("transcode_cache"), TRANSCODE_CACHE_MAX_BYTES);
+        bitmapPool = new BitmapPool(BITMAP_POOL_MAX_BYTES);
+        imageTranscoder = new ImageTranscoder(transcodeCache, bitmapPool);
+        documentGenerator = new DocumentGenerator(imageTranscoder);
+        capturePreprocessor = new CapturePreprocessor(imageTranscoder);
+    }
+
+    public ArtifactDatabase getArtifactDatabase() {
+        return artifactDatabase;
+    }
+
+    public OcrService getOcrService() {
+        return ocrService;
+    }
+
+    public FieldExtractor getFieldExtractor() {
+        return fieldExtractor;
+    }
+
+    public BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    public ImageTranscoder getImageTranscoder() {
+        return imageTranscoder;
+    }
+
+    public DocumentGenerator getDocumentGenerator() {
+        return documentGenerator;
+    }
+
+    public CapturePreprocessor getCapturePreprocessor() {
+        return capturePreprocessor;
+    }
+}
@@ -0,0 +1,107 @@
+package com.tejas.artifactgenerator;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+/**
+ * Index of every file the app writes for an artifact: step captures, OCR captures
+ * and generated documents, each tagged with the session and test case it belongs to.
+ * {@link ArtifactStore} uses it for quota, age and orphan cleanup. Since version 2 it
+ * also holds the in-progress session itself for {@link SessionStore}.
+ */
+public class ArtifactDatabase extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "artifacts.db";
+    private static final int DATABASE_VERSION = 3;
+
+    public static final String TABLE_ARTIFACTS = "artifacts";
+    public static final String COLUMN_PATH = "path";
+    public static final String COLUMN_KIND = "kind";
+    public static final String COLUMN_SESSION_ID = "session_id";
+    public static final String COLUMN_TEST_CASE_ID = "test_case_id";
+    public static final String COLUMN_SIZE_BYTES = "size_bytes";
+    public static final String COLUMN_CREATED_AT = "created_at";
+    public static final String COLUMN_LAST_USED_AT = "last_used_at";
+
+    public static final String TABLE_SESSIONS = "sessions";
+    public static final String COLUMN_TEST_CASE_TITLE = "test_case_title";
+    public static final String COLUMN_PRECONDITIONS = "preconditions";
+    public static final String COLUMN_STEP_COUNT = "step_count";
+    public static final String COLUMN_SELECTED_STEP = "selected_step";
+    public static final String COLUMN_PENDING_CAPTURE_PATH = "pending_capture_path";
+    public static final String COLUMN_PENDING_REQUEST_CODE = "pending_request_code";
+    public static final String COLUMN_FINISHED = "finished";
+    public static final String COLUMN_LAST_OCR_PATH = "last_ocr_path";
+    public static final String COLUMN_LAST_OCR_REQUEST_CODE = "last_ocr_request_code";
+    public static final String COLUMN_UPDATED_AT = "updated_at";
+
+    public static final String TABLE_SESSION_STEPS = "session_steps";
+    public static final String COLUMN_STEP = "step";
+    public static final String COLUMN_WANTS_TWO_IMAGES = "wants_two_images";
+
+    public static final String TABLE_SESSION_IMAGES = "session_images";
+    public static final String COLUMN_POSITION = "position";
+
+    public ArtifactDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ARTIFACTS + " ("
+                + COLUMN_PATH + " TEXT PRIMARY KEY, "
+                + COLUMN_KIND + " TEXT NOT NULL, "
+                + COLUMN_SESSION_ID + " TEXT NOT NULL, "
+                + COLUMN_TEST_CASE_ID + " TEXT, "
+                + COLUMN_SIZE_BYTES + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_CREATED_AT + " INTEGER NOT NULL, "
+                + COLUMN_LAST_USED_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX artifacts_last_used ON " + TABLE_ARTIFACTS + "(" + COLUMN_LAST_USED_AT + ")");
+        db.execSQL("CREATE INDEX artifacts_session ON " + TABLE_ARTIFACTS + "(" + COLUMN_SESSION_ID + ")");
+        createSessionTables(db);
+        addLastOcrColumns(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createSessionTables(db);
+        }
+        if (oldVersion < 3) {
+            addLastOcrColumns(db);
+        }
+    }
+
+    // Version 3: the last OCR capture, so its overlay can be reopened
+    private static void addLastOcrColumns(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_SESSIONS + " ADD COLUMN " + COLUMN_LAST_OCR_PATH + " TEXT");
+        db.execSQL("ALTER TABLE " + TABLE_SESSIONS + " ADD COLUMN "
+                + COLUMN_LAST_OCR_REQUEST_CODE + " INTEGER NOT NULL DEFAULT 0");
+    }
+
+    private static void createSessionTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SESSIONS + " ("
+                + COLUMN_SESSION_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_TEST_CASE_ID + " TEXT, "
+                + COLUMN_TEST_CASE_TITLE + " TEXT, "
+                + COLUMN_PRECONDITIONS + " TEXT, "
+                + COLUMN_STEP_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_SELECTED_STEP + " INTEGER NOT NULL DEFAULT -1, "
+                + COLUMN_PENDING_CAPTURE_PATH + " TEXT, "
+                + COLUMN_PENDING_REQUEST_CODE + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_FINISHED + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_UPDATED_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + TABLE_SESSION_STEPS + " ("
+                + COLUMN_SESSION_ID + " TEXT NOT NULL, "
+                + COLUMN_STEP + " INTEGER NOT NULL, "
+                + COLUMN_WANTS_TWO_IMAGES + " INTEGER NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (" + COLUMN_SESSION_ID + ", " + COLUMN_STEP + "))");
+        db.execSQL("CREATE TABLE " + TABLE_SESSION_IMAGES + " ("
+                + COLUMN_SESSION_ID + " TEXT NOT NULL, "
+                + COLUMN_STEP + " INTEGER NOT NULL, "
+                + COLUMN_POSITION + " INTEGER NOT NULL, "
+                + COLUMN_PATH + " TEXT NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_SESSION_ID + ", " + COLUMN_STEP + ", " + COLUMN_POSITION + "))");
+    }
+}
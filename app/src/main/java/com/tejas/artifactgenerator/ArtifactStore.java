@@ -0,0 +1,293 @@
+package com.tejas.artifactgenerator;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Owns the files behind captures and generated documents. Every file is created
+ * through the store and recorded in {@link ArtifactDatabase} under the current
+ * session, so old sessions can be evicted oldest-first once the quota is exceeded
+ * or they pass the maximum age. New files live under their own artifacts directory,
+ * and only that directory is swept for files nobody recorded (abandoned captures);
+ * documents and pictures written by older app versions elsewhere are left alone.
+ * The current session is never evicted. All database and cleanup work runs on one
+ * background thread.
+ */
+public class ArtifactStore {
+
+    private static final String TAG = "ArtifactStore";
+    // Unrecorded files younger than this may belong to a capture still in flight
+    private static final long ORPHAN_GRACE_MS = 60 * 60 * 1000;
+    // Everything the store creates sits below this, inside the app's external files dir
+    private static final String ROOT_DIRECTORY = "artifacts";
+
+    public enum Kind {
+        STEP_IMAGE("images", "IMG_", ".jpg"),
+        OCR_IMAGE("images", "OCR_", ".jpg"),
+        DOCUMENT("documents", "", ".docx");
+
+        final String directory;
+        final String prefix;
+        final String suffix;
+
+        Kind(String directory, String prefix, String suffix) {
+            this.directory = directory;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+    }
+
+    private final Context context;
+    private final ArtifactDatabase database;
+    private final long quotaBytes;
+    private final long maxAgeMs;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "artifact-store"));
+    private final String sessionId;
+    private volatile String testCaseId;
+
+    // sessionId comes from SessionStore, so a resumed session keeps its files protected
+    public ArtifactStore(Context context, ArtifactDatabase database, String sessionId,
+                         long quotaBytes, long maxAgeMs) {
+        this.context = context.getApplicationContext();
+        this.database = database;
+        this.sessionId = sessionId;
+        this.quotaBytes = quotaBytes;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    // Tags everything in the current session, including files recorded earlier
+    public void setTestCaseId(String testCaseId) {
+        this.testCaseId = testCaseId;
+        String session = sessionId;
+        executor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put(ArtifactDatabase.COLUMN_TEST_CASE_ID, testCaseId);
+            database.getWritableDatabase().update(ArtifactDatabase.TABLE_ARTIFACTS, values,
+                    ArtifactDatabase.COLUMN_SESSION_ID + " = ?", new String[]{session});
+        });
+    }
+
+    // An empty capture target; recorded right away so an abandoned capture is still known
+    public File newFile(Kind kind) throws IOException {
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+        File file = File.createTempFile(kind.prefix + timestamp, kind.suffix, directoryFor(kind));
+        record(file, kind);
+        return file;
+    }
+
+    // A document with a caller-chosen name in the documents directory
+    public File newDocument(String fileName) {
+        File file = new File(directoryFor(Kind.DOCUMENT), fileName);
+        record(file, Kind.DOCUMENT);
+        return file;
+    }
+
+    // Call once the file has its content, so its size counts towards the quota
+    public void commit(File file) {
+        long now = System.currentTimeMillis();
+        long size = file.length();
+        executor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put(ArtifactDatabase.COLUMN_SIZE_BYTES, size);
+            values.put(ArtifactDatabase.COLUMN_LAST_USED_AT, now);
+            database.getWritableDatabase().update(ArtifactDatabase.TABLE_ARTIFACTS, values,
+                    ArtifactDatabase.COLUMN_PATH + " = ?", new String[]{file.getAbsolutePath()});
+            trimToQuota();
+        });
+    }
+
+    // Deletes a file that will never be used, e.g. after a cancelled capture
+    public void discard(File file) {
+        executor.execute(() -> delete(database.getWritableDatabase(), file.getAbsolutePath()));
+    }
+
+    // Marks files as used now, e.g. when they go into a document
+    public void touch(List<String> paths) {
+        long now = System.currentTimeMillis();
+        List<String> copy = new ArrayList<>(paths);
+        executor.execute(() -> {
+            SQLiteDatabase db = database.getWritableDatabase();
+            ContentValues values = new ContentValues();
+            values.put(ArtifactDatabase.COLUMN_LAST_USED_AT, now);
+            db.beginTransaction();
+            try {
+                for (String path : copy) {
+                    db.update(ArtifactDatabase.TABLE_ARTIFACTS, values,
+                            ArtifactDatabase.COLUMN_PATH + " = ?", new String[]{path});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    // Age and quota eviction plus orphan sweep, off the main thread
+    public void cleanUpAsync() {
+        executor.execute(() -> {
+            try {
+                evictExpired();
+                trimToQuota();
+                removeOrphans();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Artifact cleanup failed", e);
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private File directoryFor(Kind kind) {
+        File root = context.getExternalFilesDir(ROOT_DIRECTORY);
+        if (root == null) {
+            return null;
+        }
+        File dir = new File(root, kind.directory);
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "Could not create " + dir);
+        }
+        return dir;
+    }
+
+    private void record(File file, Kind kind) {
+        long now = System.currentTimeMillis();
+        String session = sessionId;
+        String testCase = testCaseId;
+        executor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put(ArtifactDatabase.COLUMN_PATH, file.getAbsolutePath());
+            values.put(ArtifactDatabase.COLUMN_KIND, kind.name());
+            values.put(ArtifactDatabase.COLUMN_SESSION_ID, session);
+            values.put(ArtifactDatabase.COLUMN_TEST_CASE_ID, testCase);
+            values.put(ArtifactDatabase.COLUMN_SIZE_BYTES, file.length());
+            values.put(ArtifactDatabase.COLUMN_CREATED_AT, now);
+            values.put(ArtifactDatabase.COLUMN_LAST_USED_AT, now);
+            database.getWritableDatabase().insertWithOnConflict(ArtifactDatabase.TABLE_ARTIFACTS, null,
+                    values, SQLiteDatabase.CONFLICT_REPLACE);
+        });
+    }
+
+    private void delete(SQLiteDatabase db, String path) {
+        File file = new File(path);
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Could not delete " + path);
+            return;
+        }
+        db.delete(ArtifactDatabase.TABLE_ARTIFACTS, ArtifactDatabase.COLUMN_PATH + " = ?", new String[]{path});
+    }
+
+    private void evictExpired() {
+        SQLiteDatabase db = database.getWritableDatabase();
+        long cutoff = System.currentTimeMillis() - maxAgeMs;
+        List<String> expired = new ArrayList<>();
+        try (Cursor cursor = db.query(ArtifactDatabase.TABLE_ARTIFACTS,
+                new String[]{ArtifactDatabase.COLUMN_PATH},
+                ArtifactDatabase.COLUMN_LAST_USED_AT + " < ? AND " + ArtifactDatabase.COLUMN_SESSION_ID + " != ?",
+                new String[]{String.valueOf(cutoff), sessionId}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                expired.add(cursor.getString(0));
+            }
+        }
+        for (String path : expired) {
+            delete(db, path);
+        }
+        if (!expired.isEmpty()) {
+            Log.d(TAG, "Evicted " + expired.size() + " expired artifacts");
+        }
+    }
+
+    // Least recently used first, whole files at a time, never from the current session
+    private void trimToQuota() {
+        SQLiteDatabase db = database.getWritableDatabase();
+        long total;
+        try (Cursor cursor = db.rawQuery("SELECT TOTAL(" + ArtifactDatabase.COLUMN_SIZE_BYTES + ") FROM "
+                + ArtifactDatabase.TABLE_ARTIFACTS, null)) {
+            total = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+        if (total <= quotaBytes) {
+            return;
+        }
+
+        List<String> evicted = new ArrayList<>();
+        try (Cursor cursor = db.query(ArtifactDatabase.TABLE_ARTIFACTS,
+                new String[]{ArtifactDatabase.COLUMN_PATH, ArtifactDatabase.COLUMN_SIZE_BYTES},
+                ArtifactDatabase.COLUMN_SESSION_ID + " != ?", new String[]{sessionId},
+                null, null, ArtifactDatabase.COLUMN_LAST_USED_AT + " ASC")) {
+            while (total > quotaBytes && cursor.moveToNext()) {
+                evicted.add(cursor.getString(0));
+                total -= cursor.getLong(1);
+            }
+        }
+        for (String path : evicted) {
+            delete(db, path);
+        }
+        Log.d(TAG, "Trimmed " + evicted.size() + " artifacts, " + total + " bytes left");
+    }
+
+    // Deletes unrecorded files in the store's own directories and rows whose file is gone
+    private void removeOrphans() {
+        SQLiteDatabase db = database.getWritableDatabase();
+        Set<String> known = new HashSet<>();
+        List<String> missing = new ArrayList<>();
+        try (Cursor cursor = db.query(ArtifactDatabase.TABLE_ARTIFACTS,
+                new String[]{ArtifactDatabase.COLUMN_PATH, ArtifactDatabase.COLUMN_SESSION_ID},
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                String path = cursor.getString(0);
+                known.add(path);
+                // A current-session file may not exist yet while its capture is in flight
+                if (!sessionId.equals(cursor.getString(1)) && !new File(path).exists()) {
+                    missing.add(path);
+                }
+            }
+        }
+        for (String path : missing) {
+            db.delete(ArtifactDatabase.TABLE_ARTIFACTS, ArtifactDatabase.COLUMN_PATH + " = ?", new String[]{path});
+        }
+
+        long cutoff = System.currentTimeMillis() - ORPHAN_GRACE_MS;
+        int removed = 0;
+        Set<File> swept = new HashSet<>();
+        for (Kind kind : Kind.values()) {
+            File dir = directoryFor(kind);
+            if (dir == null || !swept.add(dir)) {
+                continue;
+            }
+            File[] files = dir.listFiles((d, name) -> name.endsWith(kind.suffix));
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (file.isFile() && !known.contains(file.getAbsolutePath())
+                        && file.lastModified() < cutoff && file.delete()) {
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0 || !missing.isEmpty()) {
+            Log.d(TAG, "Removed " + removed + " orphaned files and " + missing.size() + " stale rows");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.tejas.artifactgenerator;
+
+/**
+ * Finds the content box of a step image so uniform margins (monitor bezels, desk,
+ * letterboxing) are cropped away before scaling. Works on a small downsampled copy:
+ * a row or column whose luminance barely varies is margin, and the box runs from the
+ * first to the last run of rows and columns that do vary.
+ */
+public final class AutoCropper {
+
+    // Luma variance of a row/column below this is treated as flat (stddev ~8, above sensor noise)
+    private static final double FLAT_VARIANCE = 64;
+    // A few consecutive varying lines are needed, so one noisy line does not stop the crop
+    private static final int MIN_CONTENT_RUN = 3;
+    // Not worth a region decode for less than this much saved area
+    private static final double MIN_AREA_SAVED = 0.05;
+    // A box this small is more likely a bad guess than a real screen
+    private static final double MIN_KEPT_FRACTION = 0.3;
+
+    private AutoCropper() {
+    }
+
+    /**
+     * Returns {left, top, right, bottom} (right/bottom exclusive) in the given pixels'
+     * coordinates, or null when the image should be kept whole.
+     */
+    public static int[] findContentBounds(int[] argb, int width, int height) {
+        if (width < MIN_CONTENT_RUN * 2 || height < MIN_CONTENT_RUN * 2) {
+            return null;
+        }
+        int[] luma = new int[width * height];
+        for (int i = 0; i < luma.length; i++) {
+            int pixel = argb[i];
+            luma[i] = (((pixel >> 16) & 0xff) * 77 + ((pixel >> 8) & 0xff) * 150 + (pixel & 0xff) * 29) >> 8;
+        }
+
+        boolean[] rowVaries = new boolean[height];
+        for (int y = 0; y < height; y++) {
+            rowVaries[y] = variance(luma, y * width, 1, width) > FLAT_VARIANCE;
+        }
+        boolean[] columnVaries = new boolean[width];
+        for (int x = 0; x < width; x++) {
+            columnVaries[x] = variance(luma, x, width, height) > FLAT_VARIANCE;
+        }
+
+        int top = firstRun(rowVaries);
+        int left = firstRun(columnVaries);
+        if (top < 0 || left < 0) {
+            return null; // blank frame, nothing to anchor a crop to
+        }
+        int bottom = height - firstRun(reversed(rowVaries));
+        int right = width - firstRun(reversed(columnVaries));
+
+        // One pixel of slack so anti-aliased edges are not clipped
+        top = Math.max(0, top - 1);
+        left = Math.max(0, left - 1);
+        bottom = Math.min(height, bottom + 1);
+        right = Math.min(width, right + 1);
+
+        int keptWidth = right - left;
+        int keptHeight = bottom - top;
+        if (keptWidth < width * MIN_KEPT_FRACTION || keptHeight < height * MIN_KEPT_FRACTION) {
+            return null;
+        }
+        if (keptWidth * (long) keptHeight > width * (long) height * (1 - MIN_AREA_SAVED)) {
+            return null;
+        }
+        return new int[]{left, top, right, bottom};
+    }
+
+    private static double variance(int[] luma, int start, int step, int count) {
+        long sum = 0;
+        long sumOfSquares = 0;
+        for (int i = 0, index = start; i < count; i++, index += step) {
+            int value = luma[index];
+            sum += value;
+            sumOfSquares += value * value;
+        }
+        double mean = sum / (double) count;
+        return sumOfSquares / (double) count - mean * mean;
+    }
+
+    // Start of the first run of MIN_CONTENT_RUN varying lines, or -1
+    private static int firstRun(boolean[] varies) {
+        int run = 0;
+        for (int i = 0; i < varies.length; i++) {
+            run = varies[i] ? run + 1 : 0;
+            if (run == MIN_CONTENT_RUN) {
+                return i - MIN_CONTENT_RUN + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean[] reversed(boolean[] values) {
+        boolean[] reversed = new boolean[values.length];
+        for (int i = 0; i < values.length; i++) {
+            reversed[i] = values[values.length - 1 - i];
+        }
+        return reversed;
+    }
+}
@@ -0,0 +1,210 @@
+package com.tejas.artifactgenerator;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.TreeMap;
+
+/**
+ * Keeps released mutable bitmaps around for reuse as decode targets ({@code inBitmap})
+ * and scale destinations, so back-to-back generations recycle the same few native
+ * allocations instead of creating and collecting a full-size bitmap per image.
+ * Bitmaps are bucketed by allocation size rounded up to a power of two; a request
+ * only looks in its own bucket and the next one, so a small thumbnail never pins a
+ * camera-sized buffer. Callers hold bitmaps through {@link RefCountedBitmap}.
+ */
+public class BitmapPool {
+
+    private static final String TAG = "BitmapPool";
+    private static final Paint SCALE_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private final long maxBytes;
+    // Bucket exponent -> pooled bitmaps, most recently released last
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> buckets = new TreeMap<>();
+    private long pooledBytes;
+
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // An ARGB_8888 bitmap of exactly width x height; contents are undefined
+    public RefCountedBitmap acquire(int width, int height) {
+        Bitmap reused = take(width * (long) height * 4);
+        if (reused != null) {
+            reused.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+            return new RefCountedBitmap(reused, this);
+        }
+        return new RefCountedBitmap(Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888), this);
+    }
+
+    /**
+     * Decodes into a pooled bitmap when one is large enough. {@code options.inSampleSize}
+     * and the source bounds ({@code outWidth}/{@code outHeight} from a bounds pass) must
+     * already be set. Returns null if the image cannot be decoded.
+     */
+    public RefCountedBitmap decodeFile(String path, BitmapFactory.Options options) {
+        int sampleSize = Math.max(1, options.inSampleSize);
+        // Decoders round sampled dimensions up
+        return decode(options, () -> BitmapFactory.decodeFile(path, options),
+                (options.outWidth + sampleSize - 1) / sampleSize,
+                (options.outHeight + sampleSize - 1) / sampleSize, false);
+    }
+
+    /**
+     * Decodes only a region of the file; options as for decodeFile, with bounds taken
+     * from the region. Unlike BitmapFactory, the region decoder never resizes inBitmap:
+     * it draws into the top-left corner of whatever it is given. The pooled candidate
+     * is therefore reconfigured to the exact output size before decoding.
+     */
+    public RefCountedBitmap decodeRegion(String path, Rect region, BitmapFactory.Options options) {
+        BitmapRegionDecoder decoder;
+        try {
+            decoder = BitmapRegionDecoder.newInstance(path, false);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot open region decoder for " + path, e);
+            return null;
+        }
+        try {
+            options.outWidth = region.width();
+            options.outHeight = region.height();
+            int sampleSize = Math.max(1, options.inSampleSize);
+            // The region decoder rounds sampled dimensions down
+            return decode(options, () -> decoder.decodeRegion(region, options),
+                    Math.max(1, region.width() / sampleSize), Math.max(1, region.height() / sampleSize), true);
+        } finally {
+            decoder.recycle();
+        }
+    }
+
+    // A stream cannot be rewound, so if the pooled candidate is rejected the result is null
+    public RefCountedBitmap decodeStream(InputStream in, BitmapFactory.Options options) {
+        int sampleSize = Math.max(1, options.inSampleSize);
+        return decode(options, () -> BitmapFactory.decodeStream(in, null, options),
+                (options.outWidth + sampleSize - 1) / sampleSize,
+                (options.outHeight + sampleSize - 1) / sampleSize, false);
+    }
+
+    private interface Decoder {
+        Bitmap decode();
+    }
+
+    // reconfigureTarget: the decoder keeps inBitmap's size, so it must already be width x height
+    private RefCountedBitmap decode(BitmapFactory.Options options, Decoder decoder,
+                                    int width, int height, boolean reconfigureTarget) {
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inBitmap = take(width * (long) height * 4);
+        if (reconfigureTarget && options.inBitmap != null) {
+            options.inBitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+        }
+
+        Bitmap bitmap;
+        try {
+            bitmap = decoder.decode();
+        } catch (IllegalArgumentException e) {
+            // The candidate was unsuitable after all; fall back to a fresh allocation
+            Log.d(TAG, "inBitmap rejected, decoding without reuse");
+            put(options.inBitmap);
+            options.inBitmap = null;
+            bitmap = decoder.decode();
+        }
+        if (bitmap == null) {
+            put(options.inBitmap);
+            options.inBitmap = null;
+            return null;
+        }
+        options.inBitmap = null;
+        return new RefCountedBitmap(bitmap, this);
+    }
+
+    // Scales src into a pooled bitmap with bilinear filtering; src is left untouched
+    public RefCountedBitmap scale(Bitmap src, int width, int height) {
+        RefCountedBitmap scaled = acquire(width, height);
+        Canvas canvas = new Canvas(scaled.get());
+        canvas.drawBitmap(src, null, new Rect(0, 0, width, height), SCALE_PAINT);
+        return scaled;
+    }
+
+    // Draws src through matrix into a pooled width x height bitmap, e.g. rotate and scale in one pass
+    public RefCountedBitmap transform(Bitmap src, Matrix matrix, int width, int height) {
+        RefCountedBitmap transformed = acquire(width, height);
+        new Canvas(transformed.get()).drawBitmap(src, matrix, SCALE_PAINT);
+        return transformed;
+    }
+
+    public synchronized void clear() {
+        for (ArrayDeque<Bitmap> bucket : buckets.values()) {
+            for (Bitmap bitmap : bucket) {
+                bitmap.recycle();
+            }
+        }
+        buckets.clear();
+        pooledBytes = 0;
+    }
+
+    // Called by RefCountedBitmap once the last reference is released
+    synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        int bytes = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || bytes > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        buckets.computeIfAbsent(bucketFor(bytes), key -> new ArrayDeque<>()).addLast(bitmap);
+        pooledBytes += bytes;
+        trimToSize();
+    }
+
+    private synchronized Bitmap take(long bytes) {
+        int bucket = bucketFor(bytes);
+        for (int candidate = bucket; candidate <= bucket + 1; candidate++) {
+            ArrayDeque<Bitmap> pooled = buckets.get(candidate);
+            if (pooled == null) {
+                continue;
+            }
+            Iterator<Bitmap> iterator = pooled.descendingIterator();
+            while (iterator.hasNext()) {
+                Bitmap bitmap = iterator.next();
+                if (bitmap.getAllocationByteCount() >= bytes) {
+                    iterator.remove();
+                    pooledBytes -= bitmap.getAllocationByteCount();
+                    return bitmap;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Drops the least recently released bitmaps, largest buckets first
+    private void trimToSize() {
+        while (pooledBytes > maxBytes && !buckets.isEmpty()) {
+            Integer largest = buckets.lastKey();
+            ArrayDeque<Bitmap> bucket = buckets.get(largest);
+            Bitmap evicted = bucket.pollFirst();
+            if (bucket.isEmpty()) {
+                buckets.remove(largest);
+            }
+            if (evicted != null) {
+                pooledBytes -= evicted.getAllocationByteCount();
+                evicted.recycle();
+            }
+        }
+    }
+
+    private static int bucketFor(long bytes) {
+        return 64 - Long.numberOfLeadingZeros(Math.max(1, bytes - 1));
+    }
+}
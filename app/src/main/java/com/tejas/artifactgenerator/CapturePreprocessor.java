@@ -0,0 +1,62 @@
+package com.tejas.artifactgenerator;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Starts transcoding each step image as soon as the camera returns it, so the
+ * "Generate Document" tap mostly picks up finished cache entries. Tracks a
+ * per-image state for the status panel; all state is touched on the main thread.
+ * Application-scoped like the transcoder it feeds, so states survive a rotation; the
+ * activity attaches its listener in onCreate and detaches it in onDestroy.
+ */
+public class CapturePreprocessor {
+
+    public enum State { PENDING, READY, FAILED }
+
+    public interface Listener {
+        void onStateChanged(String imagePath);
+    }
+
+    private final ImageTranscoder transcoder;
+    private Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, State> states = new HashMap<>();
+
+    public CapturePreprocessor(ImageTranscoder transcoder) {
+        this.transcoder = transcoder;
+    }
+
+    // Null detaches; transcodes finishing meanwhile only update the state
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void preprocess(String imagePath, boolean wantsTwoImgs) {
+        String key = stateKey(imagePath, wantsTwoImgs);
+        if (states.get(key) == State.READY) {
+            return;
+        }
+        states.put(key, State.PENDING);
+        // Warms the duplicate check the document runs before transcoding
+        transcoder.fingerprint(imagePath);
+        transcoder.prefetch(imagePath, wantsTwoImgs, (path, wide, success) -> mainHandler.post(() -> {
+            states.put(stateKey(path, wide), success ? State.READY : State.FAILED);
+            if (listener != null) {
+                listener.onStateChanged(path);
+            }
+        }));
+    }
+
+    public State getState(String imagePath, boolean wantsTwoImgs) {
+        State state = states.get(stateKey(imagePath, wantsTwoImgs));
+        return state != null ? state : State.PENDING;
+    }
+
+    private static String stateKey(String imagePath, boolean wantsTwoImgs) {
+        return imagePath + (wantsTwoImgs ? "#wide" : "#single");
+    }
+}
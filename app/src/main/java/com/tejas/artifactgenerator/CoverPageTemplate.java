@@ -0,0 +1,72 @@
+package com.tejas.artifactgenerator;
+
+import java.util.Map;
+
+/**
+ * First-page label/value table. The table XML is laid out once per process and split
+ * around the value cells, so rendering a cover page is a handful of appends plus
+ * escaping the values. New fields only need a constant here.
+ */
+public final class CoverPageTemplate {
+
+    public enum Field {
+        TCERID("TCERID"),
+        TITLE("Title"),
+        CARD_NO("Card No"),
+        LOGIN_DETAILS("Login Details"),
+        DEVICE_ID("Device ID"),
+        PRECONDITIONS("Pre-requisites"),
+        COMMENTS("Comments");
+
+        public final String label;
+
+        Field(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Field[] FIELDS = Field.values();
+
+    // FIELDS.length + 1 fragments; value i goes between fragments i and i + 1
+    private static final String[] FRAGMENTS = buildFragments();
+
+    private CoverPageTemplate() {
+    }
+
+    private static String[] buildFragments() {
+        String cellStart = "<w:tc><w:tcPr><w:tcBorders><w:bottom w:val=\"single\"/></w:tcBorders></w:tcPr><w:p>";
+        String cellEnd = "</w:p></w:tc>";
+
+        String[] fragments = new String[FIELDS.length + 1];
+        StringBuilder fragment = new StringBuilder()
+                .append("<w:tbl><w:tblPr><w:tblW w:w=\"5000\" w:type=\"pct\"/><w:tblBorders>")
+                .append("<w:top w:val=\"single\"/><w:left w:val=\"single\"/><w:bottom w:val=\"single\"/>")
+                .append("<w:right w:val=\"single\"/><w:insideH w:val=\"single\"/><w:insideV w:val=\"single\"/>")
+                .append("</w:tblBorders></w:tblPr>");
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (i > 0) {
+                fragment.append(cellEnd).append("</w:tr>");
+            }
+            fragment.append("<w:tr>").append(cellStart)
+                    .append("<w:r><w:t xml:space=\"preserve\">").append(DocxWriter.escape(FIELDS[i].label))
+                    .append("</w:t></w:r>").append(cellEnd)
+                    .append(cellStart);
+            fragments[i] = fragment.toString();
+            fragment.setLength(0);
+        }
+        fragment.append(cellEnd).append("</w:tr></w:tbl>");
+        fragments[FIELDS.length] = fragment.toString();
+        return fragments;
+    }
+
+    public static void render(Map<Field, String> values, StringBuilder out) {
+        for (int i = 0; i < FIELDS.length; i++) {
+            out.append(FRAGMENTS[i]);
+            String value = values.get(FIELDS[i]);
+            if (value != null && !value.isEmpty()) {
+                out.append("<w:r><w:t xml:space=\"preserve\">").append(DocxWriter.escape(value)).append("</w:t></w:r>");
+            }
+        }
+        out.append(FRAGMENTS[FIELDS.length]);
+    }
+}
@@ -0,0 +1,381 @@
+package com.tejas.artifactgenerator;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Builds the Word artifact on a background worker so the UI thread never touches
+ * BitmapFactory, JPEG compression or the document zip. Image work is fanned out to
+ * {@link ImageTranscoder}, whose payloads stay on disk and are streamed into the package
+ * by {@link DocxWriter}; progress, the finished file, errors and cancellation are all
+ * delivered back on the main thread. The generator is application-scoped so a
+ * generation survives a configuration change: the old activity detaches its callback
+ * and the new one attaches its own, receiving anything posted in between.
+ */
+public class DocumentGenerator {
+
+    private static final String TAG = "DocumentGenerator";
+
+    public interface GenerationCallback {
+        void onProgress(int completedSteps, int totalSteps);
+        void onComplete(File file);
+        void onError(File file, Exception e);
+        void onCancelled(File file);
+        void onDuplicatesSkipped(List<String> imagePaths);
+    }
+
+    public interface DuplicateCheckCallback {
+        // Paths that the policy would drop; empty when nothing would be dropped
+        void onChecked(List<String> duplicates);
+    }
+
+    public enum DuplicatePolicy { KEEP_ALL, WITHIN_STEP, ACROSS_STEPS }
+
+    // Immutable snapshot of everything the document needs, taken on the UI thread
+    public static class Request {
+        final Map<CoverPageTemplate.Field, String> coverValues;
+        final SortedMap<Integer, List<String>> stepImages = new TreeMap<>();
+        final Map<Integer, Boolean> stepToggleMap;
+        final File outputFile;
+        // 0 disables the size budget
+        final long maxDocumentBytes;
+        final DuplicatePolicy duplicatePolicy;
+
+        public Request(Map<CoverPageTemplate.Field, String> coverValues,
+                       Map<Integer, List<String>> stepImages, Map<Integer, Boolean> stepToggleMap,
+                       File outputFile, long maxDocumentBytes, DuplicatePolicy duplicatePolicy) {
+            this.coverValues = new EnumMap<>(CoverPageTemplate.Field.class);
+            this.coverValues.putAll(coverValues);
+            for (Map.Entry<Integer, List<String>> entry : stepImages.entrySet()) {
+                this.stepImages.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
+            this.stepToggleMap = new HashMap<>(stepToggleMap);
+            this.outputFile = outputFile;
+            this.maxDocumentBytes = maxDocumentBytes;
+            this.duplicatePolicy = duplicatePolicy;
+        }
+    }
+
+    private static class CancelledException extends Exception {
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ImageTranscoder transcoder;
+    private final List<Future<ImageTranscoder.TranscodedImage>> pendingImages = new ArrayList<>();
+    private Future<?> currentTask;
+    private volatile boolean cancelled;
+    // Main thread only; events arriving while no callback is attached wait in undelivered
+    private GenerationCallback callback;
+    private final List<Consumer<GenerationCallback>> undelivered = new ArrayList<>();
+
+    public DocumentGenerator(ImageTranscoder transcoder) {
+        this.transcoder = transcoder;
+    }
+
+    public boolean isRunning() {
+        return currentTask != null && !currentTask.isDone();
+    }
+
+    public void generate(Request request, GenerationCallback callback) {
+        if (isRunning()) {
+            return;
+        }
+        setCallback(callback);
+        cancelled = false;
+        currentTask = executor.submit(() -> {
+            try {
+                writeDocument(request);
+                deliver(c -> c.onComplete(request.outputFile));
+            } catch (CancelledException e) {
+                request.outputFile.delete();
+                deliver(c -> c.onCancelled(request.outputFile));
+            } catch (Exception | OutOfMemoryError e) {
+                Log.e(TAG, "Document generation failed", e);
+                request.outputFile.delete();
+                Exception error = e instanceof Exception ? (Exception) e : new Exception(e);
+                deliver(c -> c.onError(request.outputFile, error));
+            } finally {
+                cancelPendingImages();
+            }
+        });
+    }
+
+    /**
+     * Attaches the callback for the running or next generation, replaying whatever arrived
+     * while none was attached, or detaches with null. Call on the main thread.
+     */
+    public void setCallback(GenerationCallback callback) {
+        this.callback = callback;
+        if (callback == null) {
+            return;
+        }
+        List<Consumer<GenerationCallback>> events = new ArrayList<>(undelivered);
+        undelivered.clear();
+        for (Consumer<GenerationCallback> event : events) {
+            event.accept(callback);
+        }
+    }
+
+    private void deliver(Consumer<GenerationCallback> event) {
+        mainHandler.post(() -> {
+            if (callback != null) {
+                event.accept(callback);
+            } else {
+                undelivered.add(event);
+            }
+        });
+    }
+
+    /**
+     * Reports which images a generation with this policy would drop, without touching
+     * stepImages, so the user can confirm before any step evidence is left out.
+     * Fingerprints are cached, so the generation that follows does not repeat the work.
+     */
+    public void findDuplicates(Map<Integer, List<String>> stepImages, DuplicatePolicy policy,
+                               DuplicateCheckCallback callback) {
+        SortedMap<Integer, List<String>> snapshot = new TreeMap<>();
+        for (Map.Entry<Integer, List<String>> entry : stepImages.entrySet()) {
+            snapshot.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        // Only called while idle; a cancel left over from the last generation must not abort the check
+        cancelled = false;
+        executor.execute(() -> {
+            List<String> duplicates = Collections.emptyList();
+            if (policy != DuplicatePolicy.KEEP_ALL) {
+                try {
+                    duplicates = NearDuplicates.collapse(snapshot, fingerprints(snapshot),
+                            policy == DuplicatePolicy.ACROSS_STEPS);
+                } catch (Exception e) {
+                    Log.w(TAG, "Duplicate check failed, assuming none", e);
+                }
+            }
+            List<String> result = duplicates;
+            mainHandler.post(() -> callback.onChecked(result));
+        });
+    }
+
+    public void cancel() {
+        cancelled = true;
+        cancelPendingImages();
+    }
+
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private void cancelPendingImages() {
+        synchronized (pendingImages) {
+            for (Future<ImageTranscoder.TranscodedImage> future : pendingImages) {
+                transcoder.release(future);
+            }
+            pendingImages.clear();
+        }
+    }
+
+    // Hands one image back to the transcoder once the document is done with it
+    private void releaseImage(Future<ImageTranscoder.TranscodedImage> future) {
+        synchronized (pendingImages) {
+            if (pendingImages.remove(future)) {
+                transcoder.release(future);
+            }
+        }
+    }
+
+    // Queue every image up front so the pool works ahead while earlier steps are assembled
+    private Map<Integer, List<Future<ImageTranscoder.TranscodedImage>>> submitImages(Request request) {
+        Map<Integer, List<Future<ImageTranscoder.TranscodedImage>>> futures = new HashMap<>();
+        synchronized (pendingImages) {
+            for (Map.Entry<Integer, List<String>> entry : request.stepImages.entrySet()) {
+                List<Future<ImageTranscoder.TranscodedImage>> stepFutures = new ArrayList<>();
+                boolean wantsTwoImgs = request.stepToggleMap.getOrDefault(entry.getKey(), false);
+                for (String imagePath : entry.getValue()) {
+                    Future<ImageTranscoder.TranscodedImage> future = transcoder.submit(imagePath, wantsTwoImgs);
+                    stepFutures.add(future);
+                    pendingImages.add(future);
+                }
+                futures.put(entry.getKey(), stepFutures);
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * Drops near-duplicate captures from the request's snapshot before anything is
+     * transcoded, keeping the sharpest frame of each group.
+     */
+    private void removeDuplicates(Request request) throws Exception {
+        List<String> skipped = NearDuplicates.collapse(request.stepImages, fingerprints(request.stepImages),
+                request.duplicatePolicy == DuplicatePolicy.ACROSS_STEPS);
+        if (!skipped.isEmpty()) {
+            Log.d(TAG, "Skipping " + skipped.size() + " near-duplicate images");
+            deliver(c -> c.onDuplicatesSkipped(skipped));
+        }
+    }
+
+    private Map<String, ImageFingerprint> fingerprints(Map<Integer, List<String>> stepImages) throws Exception {
+        // Fingerprints are shared with capture-time prefetches, so they are never cancelled
+        Map<String, Future<ImageFingerprint>> futures = new HashMap<>();
+        for (List<String> images : stepImages.values()) {
+            for (String imagePath : images) {
+                futures.computeIfAbsent(imagePath, transcoder::fingerprint);
+            }
+        }
+
+        Map<String, ImageFingerprint> fingerprints = new HashMap<>();
+        for (Map.Entry<String, Future<ImageFingerprint>> entry : futures.entrySet()) {
+            checkCancelled();
+            ImageFingerprint fingerprint = await(entry.getValue());
+            if (fingerprint != null) {
+                fingerprints.put(entry.getKey(), fingerprint);
+            }
+        }
+        return fingerprints;
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (CancellationException | InterruptedException e) {
+            throw new CancelledException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof OutOfMemoryError) {
+                throw (OutOfMemoryError) cause;
+            }
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * Waits for the default-quality payloads and, if together they would overflow the
+     * document budget, re-encodes only the images above their water-filled share.
+     * Futures are replaced in place so assembly order is unchanged.
+     */
+    private void fitToBudget(Request request,
+                             Map<Integer, List<Future<ImageTranscoder.TranscodedImage>>> imageFutures)
+            throws Exception {
+        List<Integer> steps = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        for (Map.Entry<Integer, List<Future<ImageTranscoder.TranscodedImage>>> entry : imageFutures.entrySet()) {
+            List<Future<ImageTranscoder.TranscodedImage>> futures = entry.getValue();
+            for (int i = 0; i < futures.size(); i++) {
+                checkCancelled();
+                ImageTranscoder.TranscodedImage image = await(futures.get(i));
+                if (image != null) {
+                    steps.add(entry.getKey());
+                    indexes.add(i);
+                    sizes.add(image.length);
+                }
+            }
+        }
+
+        long[] currentSizes = new long[sizes.size()];
+        for (int i = 0; i < currentSizes.length; i++) {
+            currentSizes[i] = sizes.get(i);
+        }
+        long available = SizeBudget.imageBytesAvailable(request.maxDocumentBytes, currentSizes.length);
+        if (SizeBudget.total(currentSizes) <= available) {
+            return;
+        }
+
+        long[] allowances = SizeBudget.allocate(currentSizes, available);
+        Log.d(TAG, "Payload " + SizeBudget.total(currentSizes) + " bytes over budget " + available
+                + ", re-encoding oversized images");
+        if (SizeBudget.total(allowances) > available) {
+            // Completion reports the final size against the cap, so the user still hears about it
+            Log.w(TAG, "Budget " + available + " is below the " + SizeBudget.MIN_IMAGE_BYTES
+                    + "-byte floor for " + allowances.length + " images; the document will be over the cap");
+        }
+        synchronized (pendingImages) {
+            for (int i = 0; i < allowances.length; i++) {
+                if (allowances[i] >= currentSizes[i]) {
+                    continue;
+                }
+                int step = steps.get(i);
+                String imagePath = request.stepImages.get(step).get(indexes.get(i));
+                boolean wantsTwoImgs = request.stepToggleMap.getOrDefault(step, false);
+                Future<ImageTranscoder.TranscodedImage> future =
+                        transcoder.submitWithinBudget(imagePath, wantsTwoImgs, allowances[i]);
+                releaseImage(imageFutures.get(step).set(indexes.get(i), future));
+                pendingImages.add(future);
+            }
+        }
+    }
+
+    private void checkCancelled() throws CancelledException {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            throw new CancelledException();
+        }
+    }
+
+    private void writeDocument(Request request) throws Exception {
+        int totalSteps = request.stepImages.size();
+        int completedSteps = 0;
+        deliver(c -> c.onProgress(0, totalSteps));
+        if (request.duplicatePolicy != DuplicatePolicy.KEEP_ALL) {
+            removeDuplicates(request);
+        }
+        Map<Integer, List<Future<ImageTranscoder.TranscodedImage>>> imageFutures = submitImages(request);
+        if (request.maxDocumentBytes > 0) {
+            fitToBudget(request, imageFutures);
+        }
+
+        try (DocxWriter writer = new DocxWriter(new FileOutputStream(request.outputFile))) {
+            writer.addCoverPage(request.coverValues);
+            writer.addPageBreak();
+
+            for (Map.Entry<Integer, List<String>> entry : request.stepImages.entrySet()) {
+                int step = entry.getKey();
+                List<Future<ImageTranscoder.TranscodedImage>> images = imageFutures.get(step);
+                boolean wantsTwoImgs = request.stepToggleMap.getOrDefault(step, false);
+
+                writer.addHeading("Step " + step);
+
+                for (int i = 0; i < images.size(); i++) {
+                    checkCancelled();
+                    if (i != 0 && i % 2 == 0) {
+                        writer.addPageBreak();
+                    }
+                    ImageTranscoder.TranscodedImage image = await(images.get(i));
+                    // Missing or corrupt images come back null and are skipped
+                    if (image != null) {
+                        addStepImage(writer, image, wantsTwoImgs);
+                    }
+                    // addPicture has copied the payload into the package, so the cache may evict it
+                    releaseImage(images.get(i));
+                }
+
+                writer.addPageBreak();
+
+                completedSteps++;
+                int done = completedSteps;
+                deliver(c -> c.onProgress(done, totalSteps));
+            }
+
+            checkCancelled();
+        }
+    }
+
+    private void addStepImage(DocxWriter writer, ImageTranscoder.TranscodedImage image,
+                              boolean wantsTwoImgs) throws IOException {
+        // 3 inches wide by default, 6 inches when the step is toggled
+        double widthInches = ImageSizing.widthInches(wantsTwoImgs);
+        long emuWidth = (long) (widthInches * DocxWriter.EMU_PER_INCH);
+        long emuHeight = (long) ((widthInches * image.height / (float) image.width) * DocxWriter.EMU_PER_INCH);
+
+        writer.addPicture(image.file, image.type, "step_image." + image.type.extension, emuWidth, emuHeight);
+    }
+}
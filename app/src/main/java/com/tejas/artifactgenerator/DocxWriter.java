@@ -0,0 +1,202 @@
+package com.tejas.artifactgenerator;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Minimal WordprocessingML writer for the artifact layout: the {@link CoverPageTemplate} table,
+ * bold step headings, centred inline pictures and page breaks. Media parts are streamed
+ * from their staged files into the zip as they are added (STORED, since JPEG and PNG are
+ * already compressed); only the document body text is buffered until {@link #close()}.
+ */
+public class DocxWriter implements Closeable {
+
+    public static final long EMU_PER_INCH = 914400;
+
+    public enum PictureType {
+        JPEG("jpeg"), PNG("png");
+
+        final String extension;
+
+        PictureType(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    private static final String CONTENT_TYPES =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                    + "<Default Extension=\"jpeg\" ContentType=\"image/jpeg\"/>"
+                    + "<Default Extension=\"png\" ContentType=\"image/png\"/>"
+                    + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                    + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                    + "<Override PartName=\"/word/document.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/>"
+                    + "</Types>";
+
+    private static final String PACKAGE_RELS =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                    + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"word/document.xml\"/>"
+                    + "</Relationships>";
+
+    private static final String DOCUMENT_START =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\""
+                    + " xmlns:wp=\"http://schemas.openxmlformats.org/drawingml/2006/wordprocessingDrawing\""
+                    + " xmlns:a=\"http://schemas.openxmlformats.org/drawingml/2006/main\""
+                    + " xmlns:pic=\"http://schemas.openxmlformats.org/drawingml/2006/picture\""
+                    + " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+                    + "<w:body>";
+
+    private static final String DOCUMENT_END = "</w:body></w:document>";
+
+    private static final String PAGE_BREAK = "<w:p><w:pPr><w:pageBreakBefore/></w:pPr></w:p>";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ZipOutputStream zip;
+    private final StringBuilder body = new StringBuilder(DOCUMENT_START);
+    private final StringBuilder relationships = new StringBuilder();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int pictureCount;
+    private boolean closed;
+
+    public DocxWriter(OutputStream out) throws IOException {
+        zip = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        writeXmlEntry("[Content_Types].xml", CONTENT_TYPES);
+        writeXmlEntry("_rels/.rels", PACKAGE_RELS);
+    }
+
+    public void addCoverPage(Map<CoverPageTemplate.Field, String> values) {
+        CoverPageTemplate.render(values, body);
+    }
+
+    public void addPageBreak() {
+        body.append(PAGE_BREAK);
+    }
+
+    // Bold 14pt, left aligned
+    public void addHeading(String text) {
+        body.append("<w:p><w:pPr><w:jc w:val=\"left\"/></w:pPr><w:r><w:rPr><w:b/><w:sz w:val=\"28\"/></w:rPr>");
+        appendText(text);
+        body.append("</w:r></w:p>");
+    }
+
+    // Centred inline picture; the payload is copied into the package immediately
+    public void addPicture(File payload, PictureType type, String name, long emuWidth, long emuHeight)
+            throws IOException {
+        int id = ++pictureCount;
+        String relId = "rIdImg" + id;
+        String target = "media/image" + id + "." + type.extension;
+        writeStoredEntry("word/" + target, payload);
+
+        relationships.append("<Relationship Id=\"").append(relId)
+                .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/image\" Target=\"")
+                .append(target).append("\"/>");
+
+        String descr = escape(name);
+        body.append("<w:p><w:pPr><w:jc w:val=\"center\"/></w:pPr><w:r><w:drawing>")
+                .append("<wp:inline distT=\"0\" distB=\"0\" distL=\"0\" distR=\"0\">")
+                .append("<wp:extent cx=\"").append(emuWidth).append("\" cy=\"").append(emuHeight).append("\"/>")
+                .append("<wp:docPr id=\"").append(id).append("\" name=\"Picture ").append(id)
+                .append("\" descr=\"").append(descr).append("\"/>")
+                .append("<a:graphic><a:graphicData uri=\"http://schemas.openxmlformats.org/drawingml/2006/picture\">")
+                .append("<pic:pic><pic:nvPicPr><pic:cNvPr id=\"").append(id).append("\" name=\"Picture ").append(id)
+                .append("\" descr=\"").append(descr).append("\"/>")
+                .append("<pic:cNvPicPr><a:picLocks noChangeAspect=\"1\"/></pic:cNvPicPr></pic:nvPicPr>")
+                .append("<pic:blipFill><a:blip r:embed=\"").append(relId).append("\"/>")
+                .append("<a:stretch><a:fillRect/></a:stretch></pic:blipFill>")
+                .append("<pic:spPr><a:xfrm><a:off x=\"0\" y=\"0\"/><a:ext cx=\"").append(emuWidth)
+                .append("\" cy=\"").append(emuHeight).append("\"/></a:xfrm>")
+                .append("<a:prstGeom prst=\"rect\"><a:avLst/></a:prstGeom></pic:spPr></pic:pic>")
+                .append("</a:graphicData></a:graphic></wp:inline></w:drawing></w:r></w:p>");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            body.append(DOCUMENT_END);
+            writeXmlEntry("word/document.xml", body.toString());
+            writeXmlEntry("word/_rels/document.xml.rels",
+                    "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                            + relationships + "</Relationships>");
+        } finally {
+            zip.close();
+        }
+    }
+
+    private void writeXmlEntry(String name, String xml) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.DEFLATED);
+        zip.putNextEntry(entry);
+        zip.write(xml.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    // STORED entries need size and CRC up front, so the payload is read twice from disk
+    private void writeStoredEntry(String name, File payload) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream in = new FileInputStream(payload)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+                size += read;
+            }
+        }
+
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(size);
+        entry.setCompressedSize(size);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        try (InputStream in = new FileInputStream(payload)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                zip.write(buffer, 0, read);
+            }
+        }
+        zip.closeEntry();
+    }
+
+    private void appendText(String text) {
+        body.append("<w:t xml:space=\"preserve\">").append(escape(text)).append("</w:t>");
+    }
+
+    static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    // XML 1.0 forbids most control characters; OCR text occasionally has them
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+}
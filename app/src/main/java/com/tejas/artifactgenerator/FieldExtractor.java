@@ -0,0 +1,304 @@
+package com.tejas.artifactgenerator;
+
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Proposes the test case ID, title and preconditions from one OCR pass, so the overlay
+ * is only needed for corrections. All configured ID patterns are compiled once into a
+ * single alternation and every line is matched against it once. The title and
+ * preconditions come from layout: the title is the rest of the ID's line or the
+ * tallest text close to the ID, and preconditions are whatever follows a
+ * "Preconditions" label up to the next section label.
+ */
+public class FieldExtractor {
+
+    private static final Pattern PRECONDITION_LABEL = Pattern.compile(
+            "^\\s*pre[- ]?conditions?\\b\\s*:?\\s*", Pattern.CASE_INSENSITIVE);
+    // Section headings that end a precondition run and are never a title on their own
+    private static final Pattern SECTION_LABEL = Pattern.compile(
+            "^\\s*(pre[- ]?conditions?|(test )?steps?|expected( results?)?|description|summary|priority|status"
+                    + "|attachments?|comments?)\\s*:?\\s*$", Pattern.CASE_INSENSITIVE);
+    // What sits between an ID and its title, e.g. "SIS-12 - Login" or "SIS-12: Login"
+    private static final Pattern LEADING_SEPARATORS = Pattern.compile("^[\\s:|\\-\u2013\u2014]+");
+    // Text left next to an ID shorter than this is punctuation or a stray glyph, not a title
+    private static final int MIN_TITLE_CHARS = 4;
+    // How far from the ID a separate title line may be, in multiples of the ID line's height
+    private static final float TITLE_SEARCH_LINES = 8f;
+    // Lines within this height ratio of the title's first line continue the title
+    private static final float SAME_FONT_TOLERANCE = 0.2f;
+
+    /**
+     * What the extractor found; any field may be null and the line lists may be empty.
+     * The lines are exactly the ones each text was built from, so the overlay can
+     * preselect them and confirming an unchanged selection reproduces the same fields.
+     */
+    public static final class Proposal {
+        public final String testCaseId;
+        public final String title;
+        public final String preconditions;
+        public final OcrResult.Line idLine;
+        // Holds idLine itself when the title shares the ID's line
+        public final List<OcrResult.Line> titleLines;
+        // May start with the "Preconditions:" label line when text follows the label on it
+        public final List<OcrResult.Line> preconditionLines;
+
+        Proposal(String testCaseId, String title, String preconditions, OcrResult.Line idLine,
+                 List<OcrResult.Line> titleLines, List<OcrResult.Line> preconditionLines) {
+            this.testCaseId = testCaseId;
+            this.title = title;
+            this.preconditions = preconditions;
+            this.idLine = idLine;
+            this.titleLines = titleLines;
+            this.preconditionLines = preconditionLines;
+        }
+    }
+
+    // A line with the block it belongs to, in the recognizer's reading order
+    private static final class PlacedLine {
+        final OcrResult.Block block;
+        final OcrResult.Line line;
+        final int index;
+
+        PlacedLine(OcrResult.Block block, OcrResult.Line line, int index) {
+            this.block = block;
+            this.line = line;
+            this.index = index;
+        }
+    }
+
+    private final Pattern idPattern;
+
+    /**
+     * @param idPatterns one regular expression per project key, e.g. {@code SIS-\d+};
+     *                   at least one, since an empty alternation matches everywhere
+     */
+    public FieldExtractor(List<String> idPatterns) {
+        if (idPatterns.isEmpty()) {
+            throw new IllegalArgumentException("No test case ID patterns configured");
+        }
+        StringBuilder alternation = new StringBuilder("\\b(?:");
+        for (int i = 0; i < idPatterns.size(); i++) {
+            if (i > 0) {
+                alternation.append('|');
+            }
+            alternation.append("(?:").append(idPatterns.get(i)).append(')');
+        }
+        alternation.append(")\\b");
+        this.idPattern = Pattern.compile(alternation.toString(), Pattern.CASE_INSENSITIVE);
+    }
+
+    // First ID in text, upper-cased the way project keys are written, or null
+    public String findId(String text) {
+        Matcher matcher = idPattern.matcher(text);
+        return matcher.find() ? matcher.group().toUpperCase(Locale.US) : null;
+    }
+
+    // Text with its first ID removed, for a block that holds both the ID and the title
+    public String withoutId(String text) {
+        Matcher matcher = idPattern.matcher(text);
+        if (!matcher.find()) {
+            return text.trim();
+        }
+        return cleanTitle(text.substring(0, matcher.start()) + " " + text.substring(matcher.end()));
+    }
+
+    // Text with a leading "Preconditions:" label removed
+    public String withoutPreconditionLabel(String text) {
+        Matcher label = PRECONDITION_LABEL.matcher(text);
+        return label.lookingAt() ? text.substring(label.end()).trim() : text.trim();
+    }
+
+    public Proposal extract(OcrResult result) {
+        List<PlacedLine> lines = new ArrayList<>();
+        for (OcrResult.Block block : result.blocks) {
+            for (OcrResult.Line line : block.lines) {
+                lines.add(new PlacedLine(block, line, lines.size()));
+            }
+        }
+
+        String testCaseId = null;
+        String title = null;
+        PlacedLine idLine = null;
+        List<OcrResult.Line> titleLines = new ArrayList<>();
+        Matcher matcher = idPattern.matcher("");
+        for (PlacedLine placed : lines) {
+            matcher.reset(placed.line.text);
+            if (matcher.find()) {
+                idLine = placed;
+                testCaseId = matcher.group().toUpperCase(Locale.US);
+                String rest = cleanTitle(placed.line.text.substring(matcher.end()));
+                if (rest.length() >= MIN_TITLE_CHARS) {
+                    title = rest;
+                    titleLines.add(placed.line);
+                }
+                break;
+            }
+        }
+        if (idLine != null && title == null) {
+            PlacedLine titleLine = nearestTallLine(lines, idLine);
+            if (titleLine != null) {
+                addContinuedLines(lines, titleLine, titleLines);
+                title = joinText(titleLines, " ");
+            }
+        }
+
+        List<OcrResult.Line> preconditionLines = new ArrayList<>();
+        String preconditions = findPreconditions(result, lines, preconditionLines);
+        return new Proposal(testCaseId, title, preconditions, idLine != null ? idLine.line : null,
+                Collections.unmodifiableList(titleLines), Collections.unmodifiableList(preconditionLines));
+    }
+
+    /**
+     * Best title candidate near the ID: taller text scores higher (titles are set larger
+     * than body text) and distance from the ID scores lower. Labels and other IDs are skipped.
+     */
+    private PlacedLine nearestTallLine(List<PlacedLine> lines, PlacedLine idLine) {
+        Rect idBox = idLine.line.box;
+        float idHeight = Math.max(1, height(idBox));
+        float reach = idHeight * TITLE_SEARCH_LINES;
+        PlacedLine best = null;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        Matcher matcher = idPattern.matcher("");
+        for (PlacedLine placed : lines) {
+            if (placed == idLine) {
+                continue;
+            }
+            String text = placed.line.text.trim();
+            if (text.length() < MIN_TITLE_CHARS || SECTION_LABEL.matcher(text).matches()
+                    || PRECONDITION_LABEL.matcher(text).lookingAt() || matcher.reset(text).find()) {
+                continue;
+            }
+            Rect box = placed.line.box;
+            float distance = gap(idBox, box);
+            if (distance > reach) {
+                continue;
+            }
+            float score = height(box) / idHeight - distance / reach;
+            if (score > bestScore) {
+                bestScore = score;
+                best = placed;
+            }
+        }
+        return best;
+    }
+
+    // A title that wraps continues on the next lines of its block in the same font size
+    private static void addContinuedLines(List<PlacedLine> lines, PlacedLine first, List<OcrResult.Line> out) {
+        out.add(first.line);
+        float height = Math.max(1, height(first.line.box));
+        for (int i = first.index + 1; i < lines.size(); i++) {
+            PlacedLine next = lines.get(i);
+            if (next.block != first.block
+                    || Math.abs(height(next.line.box) - height) / height > SAME_FONT_TOLERANCE
+                    || SECTION_LABEL.matcher(next.line.text).matches()) {
+                break;
+            }
+            out.add(next.line);
+        }
+    }
+
+    private static String joinText(List<OcrResult.Line> lines, String separator) {
+        StringBuilder text = new StringBuilder();
+        for (OcrResult.Line line : lines) {
+            if (text.length() > 0) {
+                text.append(separator);
+            }
+            text.append(line.text.trim());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Text after a "Preconditions" label: the rest of its line and block, or when the
+     * label stands alone, the nearest block below it, up to the next section label.
+     */
+    private String findPreconditions(OcrResult result, List<PlacedLine> lines, List<OcrResult.Line> found) {
+        for (PlacedLine placed : lines) {
+            Matcher label = PRECONDITION_LABEL.matcher(placed.line.text);
+            if (!label.lookingAt()) {
+                continue;
+            }
+            List<String> parts = new ArrayList<>();
+            String rest = placed.line.text.substring(label.end()).trim();
+            if (!rest.isEmpty()) {
+                parts.add(rest);
+                found.add(placed.line);
+            }
+            collectUntilLabel(lines, placed.index + 1, placed.block, parts, found);
+
+            if (parts.isEmpty()) {
+                OcrResult.Block below = blockBelow(result, placed.line.box);
+                if (below != null) {
+                    int start = indexOfFirstLine(lines, below);
+                    collectUntilLabel(lines, start, below, parts, found);
+                }
+            }
+            return parts.isEmpty() ? null : String.join("\n", parts);
+        }
+        return null;
+    }
+
+    private static void collectUntilLabel(List<PlacedLine> lines, int start, OcrResult.Block block,
+                                          List<String> parts, List<OcrResult.Line> found) {
+        for (int i = start; i >= 0 && i < lines.size() && lines.get(i).block == block; i++) {
+            String text = lines.get(i).line.text.trim();
+            if (SECTION_LABEL.matcher(text).matches()) {
+                break;
+            }
+            parts.add(text);
+            found.add(lines.get(i).line);
+        }
+    }
+
+    // Closest block starting below the label that overlaps it horizontally
+    private static OcrResult.Block blockBelow(OcrResult result, Rect label) {
+        OcrResult.Block best = null;
+        int bestGap = Integer.MAX_VALUE;
+        for (OcrResult.Block block : result.blocks) {
+            Rect box = block.box;
+            boolean overlaps = box.left < label.right + width(label) && box.right > label.left;
+            int gap = box.top - label.bottom;
+            if (overlaps && gap >= 0 && gap < bestGap) {
+                best = block;
+                bestGap = gap;
+            }
+        }
+        return best;
+    }
+
+    private static int indexOfFirstLine(List<PlacedLine> lines, OcrResult.Block block) {
+        for (PlacedLine placed : lines) {
+            if (placed.block == block) {
+                return placed.index;
+            }
+        }
+        return -1;
+    }
+
+    // Boxes are only read through their fields, so the extractor also runs in local unit tests
+    private static int width(Rect box) {
+        return box.right - box.left;
+    }
+
+    private static int height(Rect box) {
+        return box.bottom - box.top;
+    }
+
+    // Edge-to-edge distance between two boxes, 0 when they overlap
+    private static float gap(Rect a, Rect b) {
+        int dx = Math.max(0, Math.max(a.left - b.right, b.left - a.right));
+        int dy = Math.max(0, Math.max(a.top - b.bottom, b.top - a.bottom));
+        return (float) Math.hypot(dx, dy);
+    }
+
+    private static String cleanTitle(String text) {
+        return LEADING_SEPARATORS.matcher(text).replaceFirst("").trim();
+    }
+}
@@ -0,0 +1,262 @@
+package com.tejas.artifactgenerator;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports images picked from the gallery in two passes. {@link #plan} reads each
+ * image's capture time (EXIF, then the provider's last-modified column) and orders
+ * them oldest first, with images that have no time at the end; the caller maps that
+ * order onto steps. {@link #ingest} then copies every image into the artifact store
+ * in parallel, hashing it on the way through so the same picture picked twice is
+ * only kept once. Callbacks arrive on the main thread.
+ */
+public class GalleryImporter {
+
+    private static final String TAG = "GalleryImporter";
+    // Copies are bound by storage, not CPU; more threads only add seeking
+    private static final int INGEST_THREADS = 4;
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    public static class Candidate {
+        public final Uri uri;
+        // Milliseconds since epoch, or 0 when the image carries no usable time
+        public final long captureTime;
+
+        Candidate(Uri uri, long captureTime) {
+            this.uri = uri;
+            this.captureTime = captureTime;
+        }
+    }
+
+    public static class Imported {
+        public final int step;
+        public final String path;
+
+        Imported(int step, String path) {
+            this.step = step;
+            this.path = path;
+        }
+    }
+
+    public interface PlanCallback {
+        void onPlanned(List<Candidate> ordered);
+    }
+
+    public interface IngestCallback {
+        void onProgress(int done, int total);
+
+        // imported is in plan order, so positions within a step follow capture time
+        void onIngested(List<Imported> imported, int duplicates, int failed);
+    }
+
+    private final ContentResolver resolver;
+    private final ArtifactStore artifactStore;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newFixedThreadPool(INGEST_THREADS,
+            runnable -> new Thread(runnable, "gallery-import"));
+
+    public GalleryImporter(Context context, ArtifactStore artifactStore) {
+        this.resolver = context.getApplicationContext().getContentResolver();
+        this.artifactStore = artifactStore;
+    }
+
+    public void plan(List<Uri> uris, PlanCallback callback) {
+        int count = uris.size();
+        if (count == 0) {
+            callback.onPlanned(Collections.emptyList());
+            return;
+        }
+        Candidate[] candidates = new Candidate[count];
+        AtomicInteger remaining = new AtomicInteger(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            executor.execute(() -> {
+                Uri uri = uris.get(index);
+                long captureTime;
+                try {
+                    captureTime = captureTimeOf(uri);
+                } catch (RuntimeException e) {
+                    // A malformed file must not stop the plan from completing
+                    Log.w(TAG, "Could not read capture time of " + uri, e);
+                    captureTime = 0;
+                }
+                candidates[index] = new Candidate(uri, captureTime);
+                if (remaining.decrementAndGet() == 0) {
+                    // Timed images oldest first; untimed ones go last, in picked order (the sort is stable)
+                    List<Candidate> ordered = new ArrayList<>(Arrays.asList(candidates));
+                    Collections.sort(ordered, Comparator.comparingLong(
+                            candidate -> candidate.captureTime != 0 ? candidate.captureTime : Long.MAX_VALUE));
+                    mainHandler.post(() -> callback.onPlanned(ordered));
+                }
+            });
+        }
+    }
+
+    /**
+     * Step for each position of an ordered import: imagesPerStep images per step starting
+     * at startStep. Positions that would run past the last step get 0 and are skipped.
+     */
+    public static int[] assignSteps(int imageCount, int startStep, int imagesPerStep, int stepCount) {
+        int[] steps = new int[imageCount];
+        for (int i = 0; i < imageCount; i++) {
+            int step = startStep + i / imagesPerStep;
+            steps[i] = step <= stepCount ? step : 0;
+        }
+        return steps;
+    }
+
+    public void ingest(List<Candidate> ordered, int[] steps, IngestCallback callback) {
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < steps.length; i++) {
+            if (steps[i] > 0) {
+                positions.add(i);
+            }
+        }
+        int total = positions.size();
+        if (total == 0) {
+            callback.onIngested(Collections.emptyList(), 0, 0);
+            return;
+        }
+
+        String[] paths = new String[steps.length];
+        Set<String> seenHashes = ConcurrentHashMap.newKeySet();
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        for (int position : positions) {
+            executor.execute(() -> {
+                File file = null;
+                try {
+                    file = artifactStore.newFile(ArtifactStore.Kind.STEP_IMAGE);
+                    String hash = copy(ordered.get(position).uri, file);
+                    if (seenHashes.add(hash)) {
+                        artifactStore.commit(file);
+                        paths[position] = file.getAbsolutePath();
+                    } else {
+                        artifactStore.discard(file);
+                        duplicates.incrementAndGet();
+                    }
+                } catch (IOException | SecurityException e) {
+                    Log.w(TAG, "Import failed for " + ordered.get(position).uri, e);
+                    if (file != null) {
+                        artifactStore.discard(file);
+                    }
+                    failed.incrementAndGet();
+                }
+
+                int finished = done.incrementAndGet();
+                mainHandler.post(() -> callback.onProgress(finished, total));
+                if (finished == total) {
+                    List<Imported> imported = new ArrayList<>(total);
+                    for (int i = 0; i < paths.length; i++) {
+                        if (paths[i] != null) {
+                            imported.add(new Imported(steps[i], paths[i]));
+                        }
+                    }
+                    mainHandler.post(() -> callback.onIngested(imported, duplicates.get(), failed.get()));
+                }
+            });
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Streams the image into file and returns the SHA-256 of its bytes
+    private String copy(Uri uri, File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try (InputStream in = resolver.openInputStream(uri);
+             OutputStream out = new FileOutputStream(file)) {
+            if (in == null) {
+                throw new IOException("No stream for " + uri);
+            }
+            DigestInputStream digesting = new DigestInputStream(in, digest);
+            byte[] buffer = new byte[COPY_BUFFER_BYTES];
+            int read;
+            while ((read = digesting.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format(Locale.US, "%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private long captureTimeOf(Uri uri) {
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in != null) {
+                ExifInterface exif = new ExifInterface(in);
+                long time = parseExifTime(exif.getAttribute(ExifInterface.TAG_DATETIME_ORIGINAL));
+                if (time == 0) {
+                    time = parseExifTime(exif.getAttribute(ExifInterface.TAG_DATETIME));
+                }
+                if (time != 0) {
+                    return time;
+                }
+            }
+        } catch (IOException | SecurityException e) {
+            Log.w(TAG, "No EXIF time for " + uri, e);
+        }
+
+        // Screenshots usually have no EXIF; the document's modification time is the next best thing
+        try (Cursor cursor = resolver.query(uri,
+                new String[]{DocumentsContract.Document.COLUMN_LAST_MODIFIED}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "No modification time for " + uri, e);
+        }
+        return 0;
+    }
+
+    private static long parseExifTime(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss", Locale.US);
+            return format.parse(value.trim()).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+}
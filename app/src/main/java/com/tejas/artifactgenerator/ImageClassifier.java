@@ -0,0 +1,53 @@
+package com.tejas.artifactgenerator;
+
+/**
+ * Decides whether a target-sized step image looks like a UI capture (flat colours,
+ * crisp text) or like a photograph. UI captures survive palette quantization almost
+ * unchanged and compress far better as PNG; photographs stay JPEG. Both measures come
+ * from one strided pass over the pixels, so this is cheap next to the encode itself.
+ */
+public final class ImageClassifier {
+
+    private static final int SAMPLE_STRIDE = 2;
+    // Share of pixels the 256 most common 15-bit colours must cover
+    private static final double FLAT_COVERAGE = 0.97;
+    // Slightly noisier captures still count when they are dense with sharp edges (text)
+    private static final double TEXT_COVERAGE = 0.90;
+    private static final double TEXT_EDGE_DENSITY = 0.05;
+    private static final int EDGE_THRESHOLD = 48;
+
+    private ImageClassifier() {
+    }
+
+    public static boolean looksLikeUi(int[] argb, int width, int height) {
+        int[] histogram = new int[PaletteQuantizer.BIN_COUNT];
+        int samples = 0;
+        int edges = 0;
+        for (int y = 0; y < height; y += SAMPLE_STRIDE) {
+            int rowStart = y * width;
+            for (int x = 0; x < width - 1; x += SAMPLE_STRIDE) {
+                int pixel = argb[rowStart + x];
+                histogram[PaletteQuantizer.binOf(pixel)]++;
+                if (Math.abs(luma(pixel) - luma(argb[rowStart + x + 1])) > EDGE_THRESHOLD) {
+                    edges++;
+                }
+                samples++;
+            }
+        }
+        if (samples == 0) {
+            return false;
+        }
+
+        int covered = 0;
+        for (int bin : PaletteQuantizer.mostCommonBins(histogram, PaletteQuantizer.MAX_COLORS)) {
+            covered += histogram[bin];
+        }
+        double coverage = covered / (double) samples;
+        double edgeDensity = edges / (double) samples;
+        return coverage >= FLAT_COVERAGE || (coverage >= TEXT_COVERAGE && edgeDensity >= TEXT_EDGE_DENSITY);
+    }
+
+    private static int luma(int pixel) {
+        return (((pixel >> 16) & 0xff) * 77 + ((pixel >> 8) & 0xff) * 150 + (pixel & 0xff) * 29) >> 8;
+    }
+}
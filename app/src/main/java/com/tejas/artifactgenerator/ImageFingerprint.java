@@ -0,0 +1,94 @@
+package com.tejas.artifactgenerator;
+
+/**
+ * Perceptual fingerprint of a step image: a 256-bit difference hash (brightness
+ * gradients on a 17x16 grid) for spotting retakes of the same screen, plus the
+ * variance of the Laplacian as a cheap sharpness score for choosing between them.
+ * Works on ARGB pixels of a small decode, so it never needs a full-size bitmap.
+ */
+public final class ImageFingerprint {
+
+    private static final int HASH_COLUMNS = 17;
+    private static final int HASH_ROWS = 16;
+    // Out of 256 bits. Kept tight on purpose: screens of the same form differ in little
+    // more than text, and dropping a genuine step image is worse than keeping a retake
+    public static final int MAX_DUPLICATE_DISTANCE = 10;
+
+    private final long[] hash;
+    public final double sharpness;
+
+    private ImageFingerprint(long[] hash, double sharpness) {
+        this.hash = hash;
+        this.sharpness = sharpness;
+    }
+
+    public static ImageFingerprint of(int[] argb, int width, int height) {
+        int[] gray = new int[width * height];
+        for (int i = 0; i < gray.length; i++) {
+            int pixel = argb[i];
+            gray[i] = (((pixel >> 16) & 0xff) * 299 + ((pixel >> 8) & 0xff) * 587 + (pixel & 0xff) * 114) / 1000;
+        }
+        return new ImageFingerprint(differenceHash(gray, width, height), laplacianVariance(gray, width, height));
+    }
+
+    public int distanceTo(ImageFingerprint other) {
+        int distance = 0;
+        for (int i = 0; i < hash.length; i++) {
+            distance += Long.bitCount(hash[i] ^ other.hash[i]);
+        }
+        return distance;
+    }
+
+    public boolean isNearDuplicateOf(ImageFingerprint other) {
+        return distanceTo(other) <= MAX_DUPLICATE_DISTANCE;
+    }
+
+    // One bit per horizontal neighbour pair on the area-averaged grid: left brighter than right
+    private static long[] differenceHash(int[] gray, int width, int height) {
+        long[] cells = new long[HASH_COLUMNS * HASH_ROWS];
+        int[] counts = new int[cells.length];
+        for (int y = 0; y < height; y++) {
+            int row = y * HASH_ROWS / height;
+            for (int x = 0; x < width; x++) {
+                int cell = row * HASH_COLUMNS + x * HASH_COLUMNS / width;
+                cells[cell] += gray[y * width + x];
+                counts[cell]++;
+            }
+        }
+
+        long[] hash = new long[HASH_ROWS * (HASH_COLUMNS - 1) / 64];
+        int bit = 0;
+        for (int row = 0; row < HASH_ROWS; row++) {
+            for (int column = 0; column < HASH_COLUMNS - 1; column++, bit++) {
+                int left = row * HASH_COLUMNS + column;
+                // Cross-multiplied so cells with different pixel counts compare by mean
+                if (cells[left] * Math.max(1, counts[left + 1]) > cells[left + 1] * Math.max(1, counts[left])) {
+                    hash[bit >> 6] |= 1L << (bit & 63);
+                }
+            }
+        }
+        return hash;
+    }
+
+    // Blur removes high frequencies, so a blurred retake has a visibly lower Laplacian variance
+    private static double laplacianVariance(int[] gray, int width, int height) {
+        if (width < 3 || height < 3) {
+            return 0;
+        }
+        double sum = 0;
+        double sumOfSquares = 0;
+        int count = 0;
+        for (int y = 1; y < height - 1; y++) {
+            int rowStart = y * width;
+            for (int x = 1; x < width - 1; x++) {
+                int i = rowStart + x;
+                int laplacian = gray[i - 1] + gray[i + 1] + gray[i - width] + gray[i + width] - 4 * gray[i];
+                sum += laplacian;
+                sumOfSquares += (double) laplacian * laplacian;
+                count++;
+            }
+        }
+        double mean = sum / count;
+        return sumOfSquares / count - mean * mean;
+    }
+}
@@ -0,0 +1,117 @@
+package com.tejas.artifactgenerator;
+
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * EXIF orientation of a captured image. Camera apps usually store the sensor's pixels
+ * and only tag how they should be shown, so everything that draws or measures an image
+ * goes through the upright dimensions and {@link #toUpright} rather than rotating pixels
+ * into a second full-size bitmap.
+ */
+public final class ImageOrientation {
+
+    private static final String TAG = "ImageOrientation";
+
+    public static final ImageOrientation NORMAL = new ImageOrientation(ExifInterface.ORIENTATION_NORMAL);
+
+    private final int exifOrientation;
+
+    private ImageOrientation(int exifOrientation) {
+        this.exifOrientation = exifOrientation;
+    }
+
+    public static ImageOrientation fromFile(String path) {
+        try {
+            return of(new ExifInterface(path));
+        } catch (IOException e) {
+            Log.w(TAG, "No EXIF for " + path, e);
+            return NORMAL;
+        }
+    }
+
+    public static ImageOrientation fromStream(InputStream in) {
+        try {
+            return of(new ExifInterface(in));
+        } catch (IOException e) {
+            Log.w(TAG, "No EXIF in stream", e);
+            return NORMAL;
+        }
+    }
+
+    private static ImageOrientation of(ExifInterface exif) {
+        int value = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        if (value <= ExifInterface.ORIENTATION_NORMAL || value > ExifInterface.ORIENTATION_ROTATE_270) {
+            return NORMAL;
+        }
+        return new ImageOrientation(value);
+    }
+
+    public boolean isNormal() {
+        return exifOrientation == ExifInterface.ORIENTATION_NORMAL;
+    }
+
+    // Transpose, 90, transverse and 270 all swap width and height
+    public boolean swapsDimensions() {
+        return exifOrientation >= ExifInterface.ORIENTATION_TRANSPOSE;
+    }
+
+    public int uprightWidth(int storedWidth, int storedHeight) {
+        return swapsDimensions() ? storedHeight : storedWidth;
+    }
+
+    public int uprightHeight(int storedWidth, int storedHeight) {
+        return swapsDimensions() ? storedWidth : storedHeight;
+    }
+
+    // Short tag for cache keys, so entries written before orientation mattered are not reused
+    public String cacheTag() {
+        return "o" + exifOrientation;
+    }
+
+    /**
+     * Sets {@code matrix} to map stored pixel coordinates of a width x height bitmap into
+     * the upright frame. Callers post-concatenate any scaling they need.
+     */
+    public Matrix toUpright(Matrix matrix, int width, int height) {
+        matrix.reset();
+        switch (exifOrientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                matrix.postTranslate(width, 0);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                matrix.postTranslate(width, height);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                matrix.postTranslate(0, height);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(-90);
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                matrix.postTranslate(height, 0);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(90);
+                matrix.postScale(1, -1);
+                matrix.postTranslate(height, width);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(-90);
+                matrix.postTranslate(0, width);
+                break;
+            default:
+                break;
+        }
+        return matrix;
+    }
+}
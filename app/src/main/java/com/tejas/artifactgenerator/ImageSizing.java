@@ -0,0 +1,48 @@
+package com.tejas.artifactgenerator;
+
+/**
+ * Pixel maths for step images. Everything is derived from the printed width the
+ * picture gets in the document, so the decoder never produces more pixels than
+ * the page can show.
+ */
+public final class ImageSizing {
+
+    // Printed resolution for step images; plenty for screen captures viewed on a monitor
+    public static final int TARGET_DPI = 150;
+
+    public static final double SINGLE_IMAGE_WIDTH_INCHES = 3.0;
+    public static final double WIDE_IMAGE_WIDTH_INCHES = 6.0;
+
+    private ImageSizing() {
+    }
+
+    // Same mapping the document uses for its EMU width
+    public static double widthInches(boolean wantsTwoImgs) {
+        return wantsTwoImgs ? WIDE_IMAGE_WIDTH_INCHES : SINGLE_IMAGE_WIDTH_INCHES;
+    }
+
+    public static int targetPixelWidth(boolean wantsTwoImgs) {
+        return (int) Math.round(widthInches(wantsTwoImgs) * TARGET_DPI);
+    }
+
+    // Never upscale: small sources keep their own width
+    public static int clampedTargetWidth(int sourceWidth, int targetWidth) {
+        return Math.max(1, Math.min(sourceWidth, targetWidth));
+    }
+
+    public static int scaledHeight(int sourceWidth, int sourceHeight, int targetWidth) {
+        return Math.max(1, Math.round(sourceHeight * (targetWidth / (float) sourceWidth)));
+    }
+
+    /**
+     * Largest power of two that still leaves the decoded width at or above the
+     * target, so the final filtered scale only ever shrinks.
+     */
+    public static int computeSampleSize(int sourceWidth, int targetWidth) {
+        int sampleSize = 1;
+        while (sourceWidth / (sampleSize * 2) >= targetWidth) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
@@ -0,0 +1,578 @@
+package com.tejas.artifactgenerator;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes, scales and JPEG-compresses step images on a bounded worker pool.
+ * Images are decoded straight to roughly the size they print at (see {@link ImageSizing})
+ * and finished with one filtered transform that also applies the EXIF orientation, never
+ * at full camera resolution. Uniform margins are cropped away first (see
+ * {@link AutoCropper}), with a region decode so they are never decoded at full size.
+ * UI-like captures are written as palette PNGs when that is smaller than a legible
+ * JPEG (see {@link ImageClassifier}). Decode and scale targets come from a shared
+ * {@link BitmapPool}, so consecutive images reuse buffers. Finished payloads go
+ * through {@link TranscodeCache}, so unchanged images are only processed once, and
+ * work already started at capture time is joined rather than repeated. JPEGs that
+ * already fit are passed through untouched. Callers keep the returned futures in
+ * step/image order and read them back in that order, so the document layout stays
+ * deterministic however the workers finish.
+ */
+public class ImageTranscoder {
+
+    private static final String TAG = "ImageTranscoder";
+
+    // Rough peak heap a single transcode holds: a subsampled decode (at most twice the
+    // target in each dimension) plus the target-sized copy for a 6" wide image
+    private static final long BYTES_PER_WORKER = 32L * 1024 * 1024;
+    private static final int JPEG_QUALITY = 40;
+    // UI captures are only compared against JPEG at a quality where text stays crisp
+    private static final int UI_JPEG_QUALITY = 80;
+    private static final int MIN_BUDGET_QUALITY = 20;
+    private static final int MAX_BUDGET_QUALITY = 90;
+    private static final int QUALITY_RESOLUTION = 5;
+    private static final int MAX_DOWNSCALE_ATTEMPTS = 4;
+    // A q40 re-encode of a target-sized image rarely beats this, so denser sources are still transcoded
+    private static final double MAX_PASSTHROUGH_BYTES_PER_PIXEL = 0.5;
+    // Fingerprints are taken from a decode about this wide
+    private static final int FINGERPRINT_WIDTH = 512;
+    // Margin detection only needs the coarse layout
+    private static final int CROP_PROBE_WIDTH = 256;
+
+    // A payload on disk (cache entry or passed-through source); the document streams it at write time.
+    // Each document submit holds a pin on the cache entry until it hands it back through release()
+    public static class TranscodedImage {
+        public final File file;
+        public final DocxWriter.PictureType type;
+        public final long length;
+        public final int width;
+        public final int height;
+
+        public TranscodedImage(File file, DocxWriter.PictureType type, int width, int height) {
+            this.file = file;
+            this.type = type;
+            this.length = file.length();
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    public interface PrefetchListener {
+        void onPrefetched(String imagePath, boolean wantsTwoImgs, boolean success);
+    }
+
+    // Far more images than one session holds, so only earlier sessions' fingerprints are dropped
+    private static final int MAX_FINGERPRINTS = 1024;
+
+    private static class Job {
+        FutureTask<TranscodedImage> task;
+        final List<PrefetchListener> listeners = new ArrayList<>();
+        // Document submits joined to this job; each gets its own pin on the result
+        int claims;
+    }
+
+    // A fingerprint is only valid for the file version it was taken from
+    private static class FingerprintEntry {
+        final long length;
+        final long lastModified;
+        final Future<ImageFingerprint> future;
+
+        FingerprintEntry(long length, long lastModified, Future<ImageFingerprint> future) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.future = future;
+        }
+    }
+
+    private final ExecutorService executor;
+    // Separate pool for quality probes so a worker waiting on its probes can never starve them
+    private final ExecutorService probeExecutor;
+    private final TranscodeCache cache;
+    private final BitmapPool bitmapPool;
+    // Queued or running work per image and layout mode, so captures and documents share it
+    private final Map<String, Job> jobs = new HashMap<>();
+    // One entry per path; a retake written to the same path has a new size or mtime and replaces it
+    private final LruCache<String, FingerprintEntry> fingerprints = new LruCache<>(MAX_FINGERPRINTS);
+
+    public ImageTranscoder(TranscodeCache cache, BitmapPool bitmapPool) {
+        this.cache = cache;
+        this.bitmapPool = bitmapPool;
+        int poolSize = computePoolSize();
+        Log.d(TAG, "Transcoder pool size: " + poolSize);
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "image-transcoder");
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        probeExecutor = new ThreadPoolExecutor(cores, cores, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> new Thread(runnable, "jpeg-probe"));
+        ((ThreadPoolExecutor) probeExecutor).allowCoreThreadTimeOut(true);
+    }
+
+    private static int computePoolSize() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        // Leave half the heap for the UI, the bitmap pool and the body text DocxWriter buffers
+        long heapBudget = Runtime.getRuntime().maxMemory() / 2;
+        int byMemory = (int) Math.max(1, heapBudget / BYTES_PER_WORKER);
+        return Math.max(1, Math.min(cores, byMemory));
+    }
+
+    public Future<TranscodedImage> submit(String imagePath, boolean wantsTwoImgs) {
+        return enqueue(imagePath, wantsTwoImgs, null);
+    }
+
+    // Starts work on a freshly captured image; a later submit() for the same image joins it
+    public void prefetch(String imagePath, boolean wantsTwoImgs, PrefetchListener listener) {
+        enqueue(imagePath, wantsTwoImgs, listener);
+    }
+
+    /**
+     * Returns a document submit's claim on its payload: once the picture is written, or
+     * when the document no longer needs it. Unfinished work is dropped unless another
+     * document submit or a capture prefetch is still waiting on it; a finished payload
+     * has its cache pin returned so the entry can be evicted again.
+     */
+    public void release(Future<TranscodedImage> future) {
+        synchronized (jobs) {
+            Iterator<Job> iterator = jobs.values().iterator();
+            while (iterator.hasNext()) {
+                Job job = iterator.next();
+                if (job.task == future) {
+                    job.claims--;
+                    if (job.claims == 0 && job.listeners.isEmpty()) {
+                        future.cancel(true);
+                        iterator.remove();
+                    }
+                    return;
+                }
+            }
+        }
+        // The job is finished and its claims were turned into pins on the result
+        try {
+            TranscodedImage image = future.get();
+            if (image != null) {
+                cache.unpin(image.file);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Failed or cancelled work never pinned anything
+        }
+    }
+
+    // Re-encodes an image so its payload fits budgetBytes, lowering quality first and resolution second
+    public Future<TranscodedImage> submitWithinBudget(String imagePath, boolean wantsTwoImgs, long budgetBytes) {
+        if (budgetBytes <= 0) {
+            // 0 means "no budget" everywhere below, which would silently skip the squeeze
+            throw new IllegalArgumentException("Budget must be positive: " + budgetBytes);
+        }
+        return enqueue(imagePath, wantsTwoImgs, budgetBytes, null);
+    }
+
+    private Future<TranscodedImage> enqueue(String imagePath, boolean wantsTwoImgs, PrefetchListener listener) {
+        return enqueue(imagePath, wantsTwoImgs, 0, listener);
+    }
+
+    private Future<TranscodedImage> enqueue(String imagePath, boolean wantsTwoImgs, long budgetBytes,
+                                            PrefetchListener listener) {
+        String key = imagePath + (wantsTwoImgs ? "#wide" : "#single") + (budgetBytes > 0 ? "#b" + budgetBytes : "");
+        synchronized (jobs) {
+            Job job = jobs.get(key);
+            if (job == null) {
+                Job created = new Job();
+                created.task = new FutureTask<>(() -> {
+                    TranscodedImage result = null;
+                    try {
+                        result = transcode(imagePath, wantsTwoImgs, budgetBytes);
+                        return result;
+                    } finally {
+                        List<PrefetchListener> listeners;
+                        synchronized (jobs) {
+                            jobs.remove(key, created);
+                            listeners = new ArrayList<>(created.listeners);
+                            if (result != null) {
+                                handOverPins(result, created.claims);
+                            }
+                        }
+                        for (PrefetchListener waiting : listeners) {
+                            waiting.onPrefetched(imagePath, wantsTwoImgs, result != null);
+                        }
+                    }
+                });
+                jobs.put(key, created);
+                executor.execute(created.task);
+                job = created;
+            }
+            if (listener != null) {
+                job.listeners.add(listener);
+            } else {
+                job.claims++;
+            }
+            return job.task;
+        }
+    }
+
+    // transcode() returns its entry pinned once; leave exactly one pin per document claim
+    private void handOverPins(TranscodedImage result, int claims) {
+        if (claims == 0) {
+            cache.unpin(result.file);
+        }
+        for (int i = 1; i < claims; i++) {
+            cache.pin(result.file);
+        }
+    }
+
+    // Perceptual hash and sharpness for duplicate detection; completes with null for unreadable images
+    public Future<ImageFingerprint> fingerprint(String imagePath) {
+        File source = new File(imagePath);
+        long length = source.length();
+        long lastModified = source.lastModified();
+        synchronized (fingerprints) {
+            FingerprintEntry entry = fingerprints.get(imagePath);
+            if (entry == null || entry.length != length || entry.lastModified != lastModified) {
+                FutureTask<ImageFingerprint> task = new FutureTask<>(() -> computeFingerprint(imagePath));
+                entry = new FingerprintEntry(length, lastModified, task);
+                fingerprints.put(imagePath, entry);
+                executor.execute(task);
+            }
+            return entry.future;
+        }
+    }
+
+    private ImageFingerprint computeFingerprint(String imagePath) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(imagePath, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+        bounds.inSampleSize = ImageSizing.computeSampleSize(bounds.outWidth, FINGERPRINT_WIDTH);
+        RefCountedBitmap sampled = bitmapPool.decodeFile(imagePath, bounds);
+        if (sampled == null) {
+            return null;
+        }
+        try {
+            Bitmap bitmap = sampled.get();
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            return ImageFingerprint.of(pixels, width, height);
+        } finally {
+            sampled.release();
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        probeExecutor.shutdownNow();
+    }
+
+    // Returns null for missing or corrupt images so the caller can skip them
+    private TranscodedImage transcode(String imagePath, boolean wantsTwoImgs, long budgetBytes) throws Exception {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(imagePath, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        // Sizing works on the upright image; the decode itself is always in stored orientation
+        ImageOrientation orientation = ImageOrientation.fromFile(imagePath);
+        int uprightWidth = orientation.uprightWidth(bounds.outWidth, bounds.outHeight);
+        int uprightHeight = orientation.uprightHeight(bounds.outWidth, bounds.outHeight);
+        int targetWidth = ImageSizing.clampedTargetWidth(uprightWidth, ImageSizing.targetPixelWidth(wantsTwoImgs));
+        int targetHeight = ImageSizing.scaledHeight(uprightWidth, uprightHeight, targetWidth);
+
+        File source = new File(imagePath);
+        if (orientation.isNormal() && canPassThrough(source, bounds, targetWidth, budgetBytes)) {
+            Log.d(TAG, "Passing through " + imagePath + " (" + source.length() + " bytes)");
+            return new TranscodedImage(source, DocxWriter.PictureType.JPEG, bounds.outWidth, bounds.outHeight);
+        }
+
+        // The crop is derived from the source bytes, so it needs no key of its own beyond "_ac"
+        String encoding = (budgetBytes > 0 ? "b" + budgetBytes : "q" + JPEG_QUALITY) + "_" + orientation.cacheTag()
+                + "_pal_ac";
+        String cacheKey;
+        try {
+            cacheKey = cache.keyFor(imagePath, targetWidth, encoding, wantsTwoImgs);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read " + imagePath, e);
+            return null;
+        }
+        File cached = cache.get(cacheKey);
+        if (cached != null) {
+            return fromCached(cached);
+        }
+
+        int sourceWidth = bounds.outWidth;
+        int sourceHeight = bounds.outHeight;
+        Rect crop = findCrop(imagePath, sourceWidth, sourceHeight);
+        if (crop != null) {
+            // Size against the content box; margins never reach the decoder or the page
+            uprightWidth = orientation.uprightWidth(crop.width(), crop.height());
+            uprightHeight = orientation.uprightHeight(crop.width(), crop.height());
+            targetWidth = ImageSizing.clampedTargetWidth(uprightWidth, ImageSizing.targetPixelWidth(wantsTwoImgs));
+            targetHeight = ImageSizing.scaledHeight(uprightWidth, uprightHeight, targetWidth);
+        }
+
+        // The bounds pass doubles as the decode options so the pool can size its candidate
+        bounds.inSampleSize = ImageSizing.computeSampleSize(uprightWidth, targetWidth);
+        RefCountedBitmap sampled = crop != null
+                ? bitmapPool.decodeRegion(imagePath, crop, bounds)
+                : bitmapPool.decodeFile(imagePath, bounds);
+        if (sampled == null) {
+            return null;
+        }
+
+        Log.d("ImageInfo", "Original: " + sourceWidth + "x" + sourceHeight
+                + (crop != null ? ", cropped to " + crop.width() + "x" + crop.height() : "")
+                + ", sampled 1/" + bounds.inSampleSize + ", target: " + targetWidth + "x" + targetHeight);
+
+        RefCountedBitmap scaled = sampled;
+        Bitmap decoded = sampled.get();
+        if (!orientation.isNormal() || decoded.getWidth() != targetWidth || decoded.getHeight() != targetHeight) {
+            // Rotation and the final downscale in one draw, straight into the target-sized bitmap
+            Matrix matrix = orientation.toUpright(new Matrix(), decoded.getWidth(), decoded.getHeight());
+            matrix.postScale(targetWidth / (float) orientation.uprightWidth(decoded.getWidth(), decoded.getHeight()),
+                    targetHeight / (float) orientation.uprightHeight(decoded.getWidth(), decoded.getHeight()));
+            try {
+                scaled = bitmapPool.transform(decoded, matrix, targetWidth, targetHeight);
+            } finally {
+                sampled.release();
+            }
+        }
+
+        EncodedBitmap encoded;
+        boolean ownsScaled = true;
+        try {
+            encoded = encodeIfUi(scaled.get(), budgetBytes);
+            if (encoded == null && budgetBytes > 0) {
+                ownsScaled = false;
+                encoded = compressWithinBudget(scaled, budgetBytes);
+            } else if (encoded == null) {
+                encoded = new EncodedBitmap(compress(scaled.get(), JPEG_QUALITY), DocxWriter.PictureType.JPEG,
+                        targetWidth, targetHeight);
+            }
+        } finally {
+            if (ownsScaled) {
+                scaled.release();
+            }
+        }
+
+        File staged = cache.put(cacheKey, encoded.data, encoded.type);
+        if (staged == null) {
+            throw new IOException("Could not stage transcoded " + imagePath);
+        }
+        return new TranscodedImage(staged, encoded.type, encoded.width, encoded.height);
+    }
+
+    /**
+     * For UI-like images, the smaller of a palette PNG and a legible JPEG, provided it
+     * fits the budget (if any). Null for photographs, or when neither fits and the
+     * budget search has to take over.
+     */
+    private static EncodedBitmap encodeIfUi(Bitmap bitmap, long budgetBytes) throws IOException {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        if (!ImageClassifier.looksLikeUi(pixels, width, height)) {
+            return null;
+        }
+
+        byte[] png = PalettePngEncoder.encode(PaletteQuantizer.quantize(pixels), width, height);
+        byte[] jpeg = compress(bitmap, UI_JPEG_QUALITY);
+        Log.d(TAG, "UI capture: palette PNG " + png.length + " bytes, JPEG q" + UI_JPEG_QUALITY + " " + jpeg.length);
+        EncodedBitmap smaller = png.length <= jpeg.length
+                ? new EncodedBitmap(png, DocxWriter.PictureType.PNG, width, height)
+                : new EncodedBitmap(jpeg, DocxWriter.PictureType.JPEG, width, height);
+        return budgetBytes <= 0 || smaller.data.length <= budgetBytes ? smaller : null;
+    }
+
+    // Content box in stored-orientation source pixels, found on a small probe decode; null keeps the whole image
+    private Rect findCrop(String imagePath, int sourceWidth, int sourceHeight) {
+        BitmapFactory.Options probe = new BitmapFactory.Options();
+        probe.outWidth = sourceWidth;
+        probe.outHeight = sourceHeight;
+        probe.inSampleSize = ImageSizing.computeSampleSize(sourceWidth, CROP_PROBE_WIDTH);
+        RefCountedBitmap small = bitmapPool.decodeFile(imagePath, probe);
+        if (small == null) {
+            return null;
+        }
+        int[] box;
+        int probeWidth;
+        int probeHeight;
+        try {
+            Bitmap bitmap = small.get();
+            probeWidth = bitmap.getWidth();
+            probeHeight = bitmap.getHeight();
+            int[] pixels = new int[probeWidth * probeHeight];
+            bitmap.getPixels(pixels, 0, probeWidth, 0, 0, probeWidth, probeHeight);
+            box = AutoCropper.findContentBounds(pixels, probeWidth, probeHeight);
+        } finally {
+            small.release();
+        }
+        if (box == null) {
+            return null;
+        }
+        float scaleX = sourceWidth / (float) probeWidth;
+        float scaleY = sourceHeight / (float) probeHeight;
+        return new Rect((int) (box[0] * scaleX), (int) (box[1] * scaleY),
+                Math.min(sourceWidth, (int) Math.ceil(box[2] * scaleX)),
+                Math.min(sourceHeight, (int) Math.ceil(box[3] * scaleY)));
+    }
+
+    // Small JPEGs (screenshots, low-res re-captures) are embedded as-is: no decode, no generation loss
+    private static boolean canPassThrough(File source, BitmapFactory.Options bounds, int targetWidth,
+                                          long budgetBytes) {
+        if (!"image/jpeg".equals(bounds.outMimeType) || bounds.outWidth > targetWidth) {
+            return false;
+        }
+        long length = source.length();
+        if (budgetBytes > 0) {
+            return length <= budgetBytes;
+        }
+        return length <= (long) bounds.outWidth * bounds.outHeight * MAX_PASSTHROUGH_BYTES_PER_PIXEL;
+    }
+
+    private static TranscodedImage fromCached(File file) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getAbsolutePath(), bounds);
+        DocxWriter.PictureType type = "image/png".equals(bounds.outMimeType)
+                ? DocxWriter.PictureType.PNG : DocxWriter.PictureType.JPEG;
+        return new TranscodedImage(file, type, bounds.outWidth, bounds.outHeight);
+    }
+
+    private static class EncodedBitmap {
+        final byte[] data;
+        final DocxWriter.PictureType type;
+        final int width;
+        final int height;
+
+        EncodedBitmap(byte[] data, DocxWriter.PictureType type, int width, int height) {
+            this.data = data;
+            this.type = type;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private static byte[] compress(Bitmap bitmap, int quality) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, quality, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Searches for the highest JPEG quality that fits the budget, probing several
+     * qualities of the one decoded bitmap at once. When even the lowest quality is too
+     * big the bitmap is shrunk and the search repeats. Takes ownership of the caller's
+     * reference to {@code bitmap}.
+     */
+    private EncodedBitmap compressWithinBudget(RefCountedBitmap bitmap, long budgetBytes) throws Exception {
+        try {
+            for (int attempt = 0; ; attempt++) {
+                Bitmap current = bitmap.get();
+                QualitySearch search = searchQuality(current, budgetBytes);
+                if (search.best != null || attempt == MAX_DOWNSCALE_ATTEMPTS) {
+                    byte[] data = search.best != null ? search.best : search.smallest;
+                    Log.d(TAG, "Budget " + budgetBytes + " -> q" + search.bestQuality + " at "
+                            + current.getWidth() + "x" + current.getHeight() + ", " + data.length + " bytes");
+                    return new EncodedBitmap(data, DocxWriter.PictureType.JPEG, current.getWidth(), current.getHeight());
+                }
+
+                // JPEG size tracks pixel count, so shrink by the square root of the overshoot
+                double factor = Math.sqrt(budgetBytes / (double) search.smallest.length) * 0.9;
+                int width = Math.max(1, (int) (current.getWidth() * factor));
+                int height = Math.max(1, (int) (current.getHeight() * factor));
+                RefCountedBitmap smaller = bitmapPool.scale(current, width, height);
+                bitmap.release();
+                bitmap = smaller;
+            }
+        } finally {
+            bitmap.release();
+        }
+    }
+
+    private static class QualitySearch {
+        byte[] best;
+        int bestQuality = -1;
+        byte[] smallest;
+    }
+
+    private QualitySearch searchQuality(Bitmap bitmap, long budgetBytes) throws Exception {
+        QualitySearch search = new QualitySearch();
+        int low = MIN_BUDGET_QUALITY;
+        int high = MAX_BUDGET_QUALITY;
+        while (low <= high) {
+            int[] probes = probeQualities(low, high);
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int quality : probes) {
+                results.add(probeExecutor.submit(() -> compress(bitmap, quality)));
+            }
+
+            int nextLow = high + 1;
+            int nextHigh = high;
+            for (int i = 0; i < probes.length; i++) {
+                byte[] data = results.get(i).get();
+                if (probes[i] == MIN_BUDGET_QUALITY) {
+                    search.smallest = data;
+                }
+                if (data.length <= budgetBytes) {
+                    search.best = data;
+                    search.bestQuality = probes[i];
+                    nextLow = probes[i] + 1;
+                } else {
+                    // Qualities above a failed probe cannot fit either
+                    nextHigh = probes[i] - 1;
+                    for (int j = i + 1; j < results.size(); j++) {
+                        results.get(j).cancel(true);
+                    }
+                    break;
+                }
+            }
+            if (search.best == null) {
+                break;
+            }
+            low = nextLow;
+            high = nextHigh;
+            if (high - low < QUALITY_RESOLUTION) {
+                break;
+            }
+        }
+        return search;
+    }
+
+    // Up to three evenly spaced qualities covering [low, high], always including both ends
+    private static int[] probeQualities(int low, int high) {
+        if (high - low < 2) {
+            return low == high ? new int[]{low} : new int[]{low, high};
+        }
+        return new int[]{low, (low + high) / 2, high};
+    }
+}
@@ -1,32 +1,22 @@
 package com.tejas.artifactgenerator;
 
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.FileProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 import android.Manifest;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Matrix;
-import android.graphics.Paint;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
-import android.util.Log;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
 import android.widget.*;
-import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.text.TextRecognition;
-import com.google.mlkit.vision.text.Text;
-import com.google.mlkit.vision.text.TextRecognizer;
-import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
-import org.apache.poi.xwpf.usermodel.*;
-import org.apache.poi.util.Units;
-import org.openxmlformats.schemas.wordprocessingml.x2006.main.STBorder;
 import java.io.*;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -35,9 +25,13 @@ public class MainActivity extends AppCompatActivity {
     private static final int REQUEST_IMAGE_CAPTURE = 101;
     private static final int REQUEST_IMAGE_TEST_CASE = 111;
     private static final int REQUEST_IMAGE_PRECONDITION = 112;
+    private static final int REQUEST_IMPORT_IMAGES = 121;
     private EditText editStepCount;
-    private Button btnGenerateSteps, btnCapture, btnShareDoc, btnCaptureTestCase, btnCapturePreconditions;
-    private LinearLayout stepButtonsLayout;
+    private Button btnGenerateSteps, btnCapture, btnImportImages, btnShareDoc, btnCaptureTestCase, btnCapturePreconditions, btnReopenCapture, btnGenerateDoc;
+    private RecyclerView stepList;
+    private StepAdapter stepAdapter;
+    private ThumbnailLoader thumbnailLoader;
+    private int stepCount;
     private TextView textStatus, textZeraExtract;
     private int selectedStep = -1;
     private File photoFile;
@@ -45,6 +39,9 @@ public class MainActivity extends AppCompatActivity {
     private File generatedDocFile;
     private Uri testCaseImageUri;
     private Uri preconditionImageUri;
+    // Last OCR capture and the request it came from, so its overlay can be reopened from the cache
+    private File lastOcrFile;
+    private int lastOcrRequestCode;
     private final Map<Integer, List<String>> stepImages = new HashMap<>();
     private String testCaseId = "";
     private String testCaseTitle = "";
@@ -52,6 +49,26 @@ public class MainActivity extends AppCompatActivity {
     private String selectedPrefix = "C1"; // default
     private static final String PREFS_NAME = "TestCasePrefs";
     private static final String KEY_SELECTED_PREFIX = "selectedPrefix";
+    private static final long ARTIFACT_QUOTA_BYTES = 1024L * 1024 * 1024;
+    private static final long ARTIFACT_MAX_AGE_MS = 30L * 24 * 60 * 60 * 1000;
+    // A few screens of 48dp thumbnails at xxhdpi
+    private static final int THUMBNAIL_CACHE_MAX_BYTES = 16 * 1024 * 1024;
+    // Attachment limit of the test management tool
+    private static final long MAX_DOCUMENT_BYTES = 10L * 1024 * 1024;
+    // Retakes within a step are offered for collapsing; the same screen legitimately recurs
+    // across steps. Nothing is dropped unless the user confirms, since "2 Imgs" steps are
+    // often deliberate before/after pairs that look alike.
+    private static final DocumentGenerator.DuplicatePolicy DUPLICATE_CHECK_POLICY =
+            DocumentGenerator.DuplicatePolicy.WITHIN_STEP;
+    private SessionStore sessionStore;
+    private ArtifactStore artifactStore;
+    private BitmapPool bitmapPool;
+    private ImageTranscoder imageTranscoder;
+    private DocumentGenerator documentGenerator;
+    private CapturePreprocessor capturePreprocessor;
+    private GalleryImporter galleryImporter;
+    private OcrService ocrService;
+    private FieldExtractor fieldExtractor;
 
 
     @Override
@@ -61,14 +78,57 @@ public class MainActivity extends AppCompatActivity {
 
         ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.CAMERA}, 1);
 
+        ArtifactApplication application = (ArtifactApplication) getApplication();
+        ArtifactDatabase artifactDatabase = application.getArtifactDatabase();
+        sessionStore = new SessionStore(artifactDatabase);
+        SessionStore.Snapshot session = sessionStore.restore();
+        artifactStore = new ArtifactStore(this, artifactDatabase, session.sessionId,
+                ARTIFACT_QUOTA_BYTES, ARTIFACT_MAX_AGE_MS);
+        if (!session.testCaseId.isEmpty()) {
+            artifactStore.setTestCaseId(session.testCaseId);
+        }
+        artifactStore.cleanUpAsync();
+
+        bitmapPool = application.getBitmapPool();
+        imageTranscoder = application.getImageTranscoder();
+        documentGenerator = application.getDocumentGenerator();
+        galleryImporter = new GalleryImporter(this, artifactStore);
+        ocrService = application.getOcrService();
+        fieldExtractor = application.getFieldExtractor();
+        capturePreprocessor = application.getCapturePreprocessor();
+        capturePreprocessor.setListener(imagePath -> {
+            if (selectedStep != -1 && !documentGenerator.isRunning()) {
+                updateStatus();
+            }
+        });
+
         editStepCount = findViewById(R.id.editStepCount);
         btnGenerateSteps = findViewById(R.id.btnGenerateSteps);
         btnCapture = findViewById(R.id.btnCapture);
+        btnImportImages = findViewById(R.id.btnImportImages);
         btnShareDoc = findViewById(R.id.btnShareDoc);
+        btnGenerateDoc = findViewById(R.id.btnGenerateDoc);
         btnCaptureTestCase = findViewById(R.id.btnCaptureTestCase);
         btnCapturePreconditions = findViewById(R.id.btnCapturePreconditions);
-        stepButtonsLayout = findViewById(R.id.stepButtonsLayout);
+        btnReopenCapture = findViewById(R.id.btnReopenCapture);
+        stepList = findViewById(R.id.stepList);
+        thumbnailLoader = new ThumbnailLoader(
+                getResources().getDimensionPixelSize(R.dimen.step_thumbnail_size), THUMBNAIL_CACHE_MAX_BYTES);
+        stepAdapter = new StepAdapter(thumbnailLoader, new StepAdapter.Listener() {
+            @Override
+            public void onStepSelected(int step) {
+                MainActivity.this.onStepSelected(step);
+            }
+
+            @Override
+            public void onStepToggled(int step, boolean wantsTwoImages) {
+                MainActivity.this.onStepToggled(step, wantsTwoImages);
+            }
+        });
+        stepList.setLayoutManager(new LinearLayoutManager(this));
+        stepList.setAdapter(stepAdapter);
         textStatus = findViewById(R.id.textStatus);
+        restoreSession(session);
 
         btnGenerateSteps.setOnClickListener(v -> {
             String stepCountStr = editStepCount.getText().toString().trim();
@@ -77,6 +137,7 @@ public class MainActivity extends AppCompatActivity {
                 return;
             }
             int stepCount = Integer.parseInt(stepCountStr);
+            sessionStore.setStepCount(stepCount);
             generateStepButtons(stepCount);
         });
 
@@ -88,6 +149,14 @@ public class MainActivity extends AppCompatActivity {
             captureImage();
         });
 
+        btnImportImages.setOnClickListener(v -> {
+            Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType("image/*");
+            intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+            startActivityForResult(intent, REQUEST_IMPORT_IMAGES);
+        });
+
         Spinner spinnerCasePrefix = findViewById(R.id.spinnerCasePrefix);
 
 // Load saved prefix from SharedPreferences
@@ -127,7 +196,7 @@ public class MainActivity extends AppCompatActivity {
 
 
 
-        findViewById(R.id.btnGenerateDoc).setOnClickListener(v -> generateWordDocument());
+        btnGenerateDoc.setOnClickListener(v -> generateWordDocument());
 
         // Somewhere in MainActivity
         findViewById(R.id.btnContactUs).setOnClickListener(
@@ -150,12 +219,21 @@ public class MainActivity extends AppCompatActivity {
 
         btnCaptureTestCase.setOnClickListener(v -> dispatchZeraPictureIntent(REQUEST_IMAGE_TEST_CASE));
         btnCapturePreconditions.setOnClickListener(v -> dispatchZeraPictureIntent(REQUEST_IMAGE_PRECONDITION));
+        btnReopenCapture.setOnClickListener(v -> reopenLastCapture());
+
+        // A generation started before a rotation is still running; pick up its progress
+        if (documentGenerator.isRunning()) {
+            btnGenerateDoc.setText("Cancel Generation");
+            btnShareDoc.setVisibility(View.GONE);
+            textStatus.setText("Generating document...");
+        }
+        documentGenerator.setCallback(generationCallback);
     }
 
     private void dispatchZeraPictureIntent(int requestCode) {
         Intent takePictureIntent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
         try {
-            zeraPhotoFile = createImageFile();
+            zeraPhotoFile = createImageFile(ArtifactStore.Kind.OCR_IMAGE);
             Uri photoURI = FileProvider.getUriForFile(this, getPackageName() + ".provider", zeraPhotoFile);
             takePictureIntent.putExtra(MediaStore.EXTRA_OUTPUT, photoURI);
 
@@ -164,67 +242,125 @@ public class MainActivity extends AppCompatActivity {
             } else {
                 preconditionImageUri = photoURI;
             }
+            sessionStore.setPendingCapture(zeraPhotoFile, requestCode);
             startActivityForResult(takePictureIntent, requestCode);
         } catch (IOException ex) {
             Toast.makeText(this, "Failed to create Zera image file", Toast.LENGTH_SHORT).show();
         }
     }
 
-    private Map<Integer, Boolean> stepToggleMap = new HashMap<>();
+    private final Map<Integer, Boolean> stepToggleMap = new HashMap<>();
+
+    // Puts back what the last run left unfinished, e.g. after the camera app got the process killed
+    private void restoreSession(SessionStore.Snapshot session) {
+        testCaseId = session.testCaseId;
+        testCaseTitle = session.testCaseTitle;
+        testCasePreconditions = session.preconditions;
+        stepImages.putAll(session.stepImages);
+        stepToggleMap.putAll(session.stepToggles);
+
+        if (session.pendingCapturePath != null) {
+            File pending = new File(session.pendingCapturePath);
+            if (session.pendingRequestCode == REQUEST_IMAGE_CAPTURE) {
+                photoFile = pending;
+            } else {
+                zeraPhotoFile = pending;
+                Uri uri = FileProvider.getUriForFile(this, getPackageName() + ".provider", pending);
+                if (session.pendingRequestCode == REQUEST_IMAGE_TEST_CASE) {
+                    testCaseImageUri = uri;
+                } else {
+                    preconditionImageUri = uri;
+                }
+            }
+        }
+
+        if (session.lastOcrPath != null) {
+            setLastOcrCapture(new File(session.lastOcrPath), session.lastOcrRequestCode);
+        }
+
+        if (session.stepCount > 0) {
+            editStepCount.setText(String.valueOf(session.stepCount));
+            generateStepButtons(session.stepCount);
+        }
+        if (session.selectedStep != -1 && session.selectedStep <= session.stepCount) {
+            selectedStep = session.selectedStep;
+            btnCapture.setVisibility(View.VISIBLE);
+            refreshStepList();
+        }
+
+        int imageCount = 0;
+        for (Map.Entry<Integer, List<String>> entry : stepImages.entrySet()) {
+            boolean wantsTwoImages = stepToggleMap.getOrDefault(entry.getKey(), false);
+            for (String imagePath : entry.getValue()) {
+                capturePreprocessor.preprocess(imagePath, wantsTwoImages);
+                imageCount++;
+            }
+        }
+        if (selectedStep != -1) {
+            updateStatus();
+        }
+        if (session.restored && imageCount > 0) {
+            Toast.makeText(this, "Restored previous session (" + imageCount + " images)", Toast.LENGTH_SHORT).show();
+        }
+    }
 
     private void generateStepButtons(int stepCount) {
-        stepButtonsLayout.removeAllViews();
+        this.stepCount = stepCount;
         selectedStep = -1;
         btnCapture.setVisibility(View.GONE);
+        stepList.setVisibility(stepCount > 0 ? View.VISIBLE : View.GONE);
+        btnImportImages.setVisibility(stepCount > 0 ? View.VISIBLE : View.GONE);
         textStatus.setText("Step buttons generated. Click one to begin capturing images.");
+        refreshStepList();
+    }
 
-        for (int i = 1; i <= stepCount; i++) {
-            int stepNumber = i;
-
-            // Create a horizontal layout for the step row
-            LinearLayout stepRow = new LinearLayout(this);
-            stepRow.setOrientation(LinearLayout.HORIZONTAL);
-            stepRow.setLayoutParams(new LinearLayout.LayoutParams(
-                    LinearLayout.LayoutParams.MATCH_PARENT,
-                    LinearLayout.LayoutParams.WRAP_CONTENT
-            ));
-            stepRow.setPadding(0, 10, 0, 10);
-
-            // Step Button
-            Button stepButton = new Button(this);
-            stepButton.setText("Step " + stepNumber);
-            stepButton.setOnClickListener(v -> {
-                selectedStep = stepNumber;
-                btnCapture.setVisibility(View.VISIBLE);
-                updateStatus();
-            });
-
-            // Toggle Switch
-            Switch stepToggle = new Switch(this);
-            stepToggle.setText("2 Imgs");
-            stepToggle.setTextColor(Color.RED);
-            stepToggle.setChecked(false); // default is 1 image (unchecked)
-
-            // Save toggle state to map
-            stepToggle.setOnCheckedChangeListener((buttonView, isChecked) -> {
-                stepToggleMap.put(stepNumber, isChecked);
-                // Optional: Log or toast
-                // Toast.makeText(this, "Step " + stepNumber + ": " + (isChecked ? "2 images" : "1 image"), Toast.LENGTH_SHORT).show();
-            });
+    // Submits the current step state; the adapter diffs it and rebinds only changed rows
+    private void refreshStepList() {
+        List<StepAdapter.StepItem> items = new ArrayList<>(stepCount);
+        for (int step = 1; step <= stepCount; step++) {
+            items.add(new StepAdapter.StepItem(step,
+                    stepImages.getOrDefault(step, Collections.emptyList()),
+                    stepToggleMap.getOrDefault(step, false),
+                    step == selectedStep));
+        }
+        stepAdapter.submitList(items);
+    }
 
-            // Add both to row
-            stepRow.addView(stepButton);
-            stepRow.addView(stepToggle);
+    private void onStepSelected(int stepNumber) {
+        selectedStep = stepNumber;
+        sessionStore.setSelectedStep(stepNumber);
+        btnCapture.setVisibility(View.VISIBLE);
+        updateStatus();
+        refreshStepList();
+    }
 
-            // Add row to parent layout
-            stepButtonsLayout.addView(stepRow);
+    private void onStepToggled(int stepNumber, boolean isChecked) {
+        stepToggleMap.put(stepNumber, isChecked);
+        sessionStore.setStepToggle(stepNumber, isChecked);
+        // Layout width changed, so captured images need a different target size
+        for (String imagePath : stepImages.getOrDefault(stepNumber, new ArrayList<>())) {
+            capturePreprocessor.preprocess(imagePath, isChecked);
         }
+        refreshStepList();
     }
 
 
     private void updateStatus() {
         List<String> images = stepImages.getOrDefault(selectedStep, new ArrayList<>());
-        textStatus.setText("Step " + selectedStep + " selected\nCaptured images: " + images.size());
+        boolean wantsTwoImages = stepToggleMap.getOrDefault(selectedStep, false);
+        StringBuilder status = new StringBuilder("Step " + selectedStep + " selected\nCaptured images: " + images.size());
+        for (int i = 0; i < images.size(); i++) {
+            CapturePreprocessor.State state = capturePreprocessor.getState(images.get(i), wantsTwoImages);
+            status.append("\nImage ").append(i + 1).append(": ");
+            if (state == CapturePreprocessor.State.READY) {
+                status.append("ready");
+            } else if (state == CapturePreprocessor.State.FAILED) {
+                status.append("failed to process");
+            } else {
+                status.append("processing...");
+            }
+        }
+        textStatus.setText(status.toString());
     }
     private void captureImage() {
         if (selectedStep == -1) {
@@ -234,272 +370,495 @@ public class MainActivity extends AppCompatActivity {
 
         Intent intent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
         try {
-            photoFile = createImageFile();
+            photoFile = createImageFile(ArtifactStore.Kind.STEP_IMAGE);
             Uri photoURI = FileProvider.getUriForFile(this, getPackageName() + ".provider", photoFile);
             intent.putExtra(MediaStore.EXTRA_OUTPUT, photoURI);
+            sessionStore.setPendingCapture(photoFile, REQUEST_IMAGE_CAPTURE);
             startActivityForResult(intent, REQUEST_IMAGE_CAPTURE);
         } catch (IOException e) {
             Toast.makeText(this, "Failed to create image file", Toast.LENGTH_SHORT).show();
         }
     }
-    private File createImageFile() throws IOException {
-        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
-        String fileName = "IMG_" + timestamp;
-        File storageDir = getExternalFilesDir("Pictures");
-        return File.createTempFile(fileName, ".jpg", storageDir);
+    private File createImageFile(ArtifactStore.Kind kind) throws IOException {
+        return artifactStore.newFile(kind);
     }
 
     @Override
     protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
 
-        if (requestCode == REQUEST_IMAGE_CAPTURE && resultCode == RESULT_OK && selectedStep != -1) {
+        if (requestCode == REQUEST_IMPORT_IMAGES) {
+            if (resultCode == RESULT_OK && data != null) {
+                importImages(data);
+            }
+            return;
+        }
+
+        if (requestCode == REQUEST_IMAGE_CAPTURE && resultCode == RESULT_OK && selectedStep != -1
+                && photoFile != null) {
+            artifactStore.commit(photoFile);
             String imagePath = photoFile.getAbsolutePath();
             List<String> images = stepImages.computeIfAbsent(selectedStep, k -> new ArrayList<>());
             images.add(imagePath);
-            updateStatus();
-            Toast.makeText(this, "Image saved for Step " + selectedStep, Toast.LENGTH_SHORT).show();
+            sessionStore.addStepImage(selectedStep, images.size() - 1, imagePath);
+            refreshStepList();
 
             boolean wantsTwoImages = stepToggleMap.getOrDefault(selectedStep, false);
+            capturePreprocessor.preprocess(imagePath, wantsTwoImages);
 
+            updateStatus();
+            Toast.makeText(this, "Image saved for Step " + selectedStep, Toast.LENGTH_SHORT).show();
 
-
-        } else if (requestCode == REQUEST_IMAGE_TEST_CASE && resultCode == RESULT_OK) {
-            processTestCaseImage(testCaseImageUri);
-        } else if (requestCode == REQUEST_IMAGE_PRECONDITION && resultCode == RESULT_OK) {
-            processPreconditionImage(preconditionImageUri);
+        } else if (requestCode == REQUEST_IMAGE_TEST_CASE && resultCode == RESULT_OK && zeraPhotoFile != null) {
+            artifactStore.commit(zeraPhotoFile);
+            sessionStore.clearPendingCapture();
+            setLastOcrCapture(zeraPhotoFile, requestCode);
+            sessionStore.setLastOcrCapture(zeraPhotoFile, requestCode);
+            processTestCaseImage(testCaseImageUri, true);
+        } else if (requestCode == REQUEST_IMAGE_PRECONDITION && resultCode == RESULT_OK && zeraPhotoFile != null) {
+            artifactStore.commit(zeraPhotoFile);
+            sessionStore.clearPendingCapture();
+            setLastOcrCapture(zeraPhotoFile, requestCode);
+            sessionStore.setLastOcrCapture(zeraPhotoFile, requestCode);
+            processPreconditionImage(preconditionImageUri, true);
+        } else if (requestCode == REQUEST_IMAGE_CAPTURE && photoFile != null) {
+            // Cancelled capture: the camera never wrote to the file
+            artifactStore.discard(photoFile);
+            sessionStore.clearPendingCapture();
+        } else if ((requestCode == REQUEST_IMAGE_TEST_CASE || requestCode == REQUEST_IMAGE_PRECONDITION)
+                && zeraPhotoFile != null) {
+            artifactStore.discard(zeraPhotoFile);
+            sessionStore.clearPendingCapture();
         }
     }
 
-    private List<Text.TextBlock> ocrTextBlocks = new ArrayList<>(); // Global variable
-
-    private void processTestCaseImage(Uri uri) {
-        try {
-            InputImage image = InputImage.fromFilePath(this, uri);
-            TextRecognizer recognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
-
-            recognizer.process(image)
-                    .addOnSuccessListener(result -> {
-                        ocrTextBlocks.clear(); // Clear previous blocks
-
-                        for (Text.TextBlock block : result.getTextBlocks()) {
-                            ocrTextBlocks.add(block);
-                        }
-
-                        // ✅ Create and show OverlayDialog with TEST_CASE mode
-                        OverlayDialog dialog = new OverlayDialog(
-                                this,
-                                uri,
-                                ocrTextBlocks,
-                                "test_case",
-                                new OverlayDialog.OnBlockSelectedListener() {
-                                    @Override
-                                    public void onTestCaseSelected(String id, String title) {
-                                        testCaseId = id;
-                                        testCaseTitle = title;
-                                    }
-
-                                    @Override
-                                    public void onPreconditionSelected(String preconditionText) {
-                                        // No action needed here
-                                    }
-                                }
-                        );
-                        dialog.show();
-                    })
-                    .addOnFailureListener(e ->
-                            Toast.makeText(this, "OCR failed for Test Case", Toast.LENGTH_SHORT).show());
-
-        } catch (IOException e) {
-            e.printStackTrace();
+    private void importImages(Intent data) {
+        List<Uri> uris = new ArrayList<>();
+        if (data.getClipData() != null) {
+            for (int i = 0; i < data.getClipData().getItemCount(); i++) {
+                uris.add(data.getClipData().getItemAt(i).getUri());
+            }
+        } else if (data.getData() != null) {
+            uris.add(data.getData());
         }
-    }
-    private void processPreconditionImage(Uri uri) {
-        try {
-            InputImage image = InputImage.fromFilePath(this, uri);
-            TextRecognizer recognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
-
-            recognizer.process(image)
-                    .addOnSuccessListener(result -> {
-                        ocrTextBlocks.clear(); // Clear previous blocks
-
-                        for (Text.TextBlock block : result.getTextBlocks()) {
-                            ocrTextBlocks.add(block);
-                        }
-
-                        // ✅ Show the overlay dialog with precondition drag-select mode
-                        OverlayDialog dialog = new OverlayDialog(
-                                this,
-                                uri,
-                                ocrTextBlocks,
-                                "precondition",
-                                new OverlayDialog.OnBlockSelectedListener() {
-                                    @Override
-                                    public void onTestCaseSelected(String id, String title) {
-                                        // No action needed here
-                                    }
-
-                                    @Override
-                                    public void onPreconditionSelected(String preconditionText) {
-                                        testCasePreconditions = preconditionText;
-                                    }
-                                }
-                        );
-                        dialog.show();
-                    })
-                    .addOnFailureListener(e -> {
-                        Toast.makeText(this, "OCR failed for Precondition", Toast.LENGTH_SHORT).show();
-                        e.printStackTrace();
-                    });
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (uris.isEmpty()) {
+            return;
         }
+        textStatus.setText("Reading capture times of " + uris.size() + " images...");
+        galleryImporter.plan(uris, this::showImportMappingDialog);
     }
 
-    private void generateWordDocument() {
-        try {
-        XWPFDocument document = new XWPFDocument();
+    // Lets the tester shift where the time-ordered images land before anything is copied
+    private void showImportMappingDialog(List<GalleryImporter.Candidate> ordered) {
+        if (isFinishing() || ordered.isEmpty()) {
+            return;
+        }
+        View view = getLayoutInflater().inflate(R.layout.dialog_import_mapping, null);
+        EditText editStartStep = view.findViewById(R.id.editImportStartStep);
+        EditText editPerStep = view.findViewById(R.id.editImportPerStep);
+        TextView textPreview = view.findViewById(R.id.textImportPreview);
+
+        int firstEmptyStep = 1;
+        while (firstEmptyStep < stepCount && !stepImages.getOrDefault(firstEmptyStep, Collections.emptyList()).isEmpty()) {
+            firstEmptyStep++;
+        }
+        editStartStep.setText(String.valueOf(selectedStep != -1 ? selectedStep : firstEmptyStep));
+        editPerStep.setText("1");
 
-        // First page table
-        XWPFTable table = document.createTable(7, 2);
-        table.setWidth("100%");
-        String[] labels = {
-                "TCERID", "Title", "Card No", "Login Details", "Device ID", "Pre-requisites", "Comments"
+        Runnable updatePreview = () -> {
+            int[] steps = importSteps(ordered.size(), editStartStep, editPerStep);
+            if (steps == null) {
+                textPreview.setText("Enter a step between 1 and " + stepCount);
+                return;
+            }
+            int skipped = 0;
+            int lastStep = 0;
+            for (int step : steps) {
+                if (step == 0) {
+                    skipped++;
+                } else {
+                    lastStep = step;
+                }
+            }
+            String preview = ordered.size() + " images → steps " + steps[0] + "–" + lastStep;
+            if (skipped > 0) {
+                preview += "\n" + skipped + " images do not fit and will be skipped";
+            }
+            textPreview.setText(preview);
         };
+        TextWatcher watcher = new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
 
-        // Set label texts and empty right cells
-        for (int i = 0; i < labels.length; i++) {
-            table.getRow(i).getCell(0).setText(labels[i]);
-            table.getRow(i).getCell(1).setText("");
-            if(labels[i].equals("TCERID"))
-                table.getRow(i).getCell(1).setText(testCaseId);
-            if(labels[i].equals("Title"))
-                table.getRow(i).getCell(1).setText(testCaseTitle);
-            if(labels[i].equals("Pre-requisites"))
-                table.getRow(i).getCell(1).setText(testCasePreconditions);
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
 
-        }
+            @Override
+            public void afterTextChanged(Editable s) {
+                updatePreview.run();
+            }
+        };
+        editStartStep.addTextChangedListener(watcher);
+        editPerStep.addTextChangedListener(watcher);
+        updatePreview.run();
+
+        new AlertDialog.Builder(this)
+                .setTitle("Import " + ordered.size() + " images")
+                .setView(view)
+                .setPositiveButton("Import", (dialog, which) -> {
+                    int[] steps = importSteps(ordered.size(), editStartStep, editPerStep);
+                    if (steps == null) {
+                        Toast.makeText(this, "Invalid step mapping", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    ingestImages(ordered, steps);
+                })
+                .setNegativeButton("Cancel", (dialog, which) -> updateStatusOrIdle())
+                .show();
+    }
 
-        // Add bottom border to all cells
-        for (XWPFTableRow row : table.getRows()) {
-            for (XWPFTableCell cell : row.getTableCells()) {
-                cell.getCTTc().addNewTcPr().addNewTcBorders().addNewBottom().setVal(STBorder.SINGLE);
+    // Null when the mapping fields do not describe a valid start step and group size
+    private int[] importSteps(int imageCount, EditText editStartStep, EditText editPerStep) {
+        try {
+            int startStep = Integer.parseInt(editStartStep.getText().toString().trim());
+            int perStep = Integer.parseInt(editPerStep.getText().toString().trim());
+            if (startStep < 1 || startStep > stepCount || perStep < 1) {
+                return null;
             }
+            return GalleryImporter.assignSteps(imageCount, startStep, perStep, stepCount);
+        } catch (NumberFormatException e) {
+            return null;
         }
+    }
 
-        document.createParagraph().setPageBreak(true);
-
-        for (int step : stepImages.keySet()) {
-            List<String> images = stepImages.get(step);
-
-            // Step title paragraph
-            XWPFParagraph stepTitle = document.createParagraph();
-            stepTitle.setAlignment(ParagraphAlignment.LEFT);
-            XWPFRun stepRun = stepTitle.createRun();
-            stepRun.setBold(true);
-            stepRun.setFontSize(14);
-            stepRun.setText("Step " + step);
+    private void ingestImages(List<GalleryImporter.Candidate> ordered, int[] steps) {
+        btnImportImages.setEnabled(false);
+        galleryImporter.ingest(ordered, steps, new GalleryImporter.IngestCallback() {
+            @Override
+            public void onProgress(int done, int total) {
+                textStatus.setText("Importing images...\n" + done + " of " + total + " copied");
+            }
 
-            for (int i = 0; i < images.size(); i++) {
-                if (i != 0 && i % 2 == 0) {
-                    document.createParagraph().setPageBreak(true);
+            @Override
+            public void onIngested(List<GalleryImporter.Imported> imported, int duplicates, int failed) {
+                btnImportImages.setEnabled(true);
+                for (GalleryImporter.Imported image : imported) {
+                    List<String> images = stepImages.computeIfAbsent(image.step, k -> new ArrayList<>());
+                    images.add(image.path);
+                    sessionStore.addStepImage(image.step, images.size() - 1, image.path);
+                    capturePreprocessor.preprocess(image.path, stepToggleMap.getOrDefault(image.step, false));
                 }
+                refreshStepList();
+                updateStatusOrIdle();
 
-                Bitmap original = BitmapFactory.decodeFile(images.get(i));
-                if (original == null) {
-                    continue; // Skip missing or corrupt images
+                String message = "Imported " + imported.size() + " images";
+                if (duplicates > 0) {
+                    message += ", skipped " + duplicates + " duplicates";
                 }
+                if (failed > 0) {
+                    message += ", " + failed + " failed";
+                }
+                Toast.makeText(MainActivity.this, message, Toast.LENGTH_LONG).show();
+            }
+        });
+    }
 
-                // Define max dimensions for resized bitmap to balance clarity and file size
+    private void updateStatusOrIdle() {
+        if (selectedStep != -1) {
+            updateStatus();
+        } else {
+            textStatus.setText("Click a step to begin capturing images.");
+        }
+    }
 
+    private void setLastOcrCapture(File file, int requestCode) {
+        lastOcrFile = file;
+        lastOcrRequestCode = requestCode;
+        btnReopenCapture.setVisibility(View.VISIBLE);
+    }
 
-                int origWidth = original.getWidth();
-                int origHeight = original.getHeight();
-                final int maxWidth = origWidth-2000;
-                final int maxHeight = origHeight-2000;
+    // Same flow as a fresh capture, except that nothing is filled in until OK is pressed,
+    // so fields the tester already corrected survive; the OCR cache makes it instant
+    private void reopenLastCapture() {
+        if (lastOcrFile == null || !lastOcrFile.exists()) {
+            btnReopenCapture.setVisibility(View.GONE);
+            Toast.makeText(this, "Last capture is no longer available", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Uri uri = FileProvider.getUriForFile(this, getPackageName() + ".provider", lastOcrFile);
+        if (lastOcrRequestCode == REQUEST_IMAGE_TEST_CASE) {
+            processTestCaseImage(uri, false);
+        } else {
+            processPreconditionImage(uri, false);
+        }
+    }
 
-                Log.d("ImageInfo", "Original Width: " + origWidth + ", Original Height: " + origHeight);
+    // At most one recognition per capture kind; a newer capture supersedes the older one
+    private OcrService.Handle testCaseOcr;
+    private OcrService.Handle preconditionOcr;
+
+    /**
+     * applyProposal fills in fields that are still empty as soon as recognition ends;
+     * fields that already hold a value only change when the overlay is confirmed.
+     */
+    private void processTestCaseImage(Uri uri, boolean applyProposal) {
+        if (testCaseOcr != null) {
+            testCaseOcr.cancel();
+        }
+        testCaseOcr = ocrService.recognize(uri, new OcrService.Callback() {
+            @Override
+            public void onSuccess(OcrResult result) {
+                testCaseOcr = null;
+
+                // The overlay opens preselected either way, for confirming or correcting
+                FieldExtractor.Proposal proposal = fieldExtractor.extract(result);
+                if (applyProposal && proposal.testCaseId != null && proposal.title != null
+                        && testCaseId.isEmpty() && testCaseTitle.isEmpty()) {
+                    setTestCase(proposal.testCaseId, proposal.title);
+                    Toast.makeText(MainActivity.this, "Detected " + proposal.testCaseId
+                            + ", tap OK or correct the selection", Toast.LENGTH_SHORT).show();
+                }
+                if (applyProposal && proposal.preconditions != null && testCasePreconditions.isEmpty()) {
+                    setPreconditions(proposal.preconditions);
+                }
 
-                float aspectRatio = (float) origWidth / origHeight;
-                int scaledWidth, scaledHeight;
+                // ✅ Create and show OverlayDialog with TEST_CASE mode
+                OverlayDialog dialog = new OverlayDialog(
+                        MainActivity.this,
+                        uri,
+                        result,
+                        "test_case",
+                        bitmapPool,
+                        ocrService,
+                        fieldExtractor,
+                        proposal,
+                        new OverlayDialog.OnBlockSelectedListener() {
+                            @Override
+                            public void onTestCaseSelected(String id, String title) {
+                                setTestCase(id, title);
+                            }
+
+                            @Override
+                            public void onPreconditionSelected(String preconditionText) {
+                                // No action needed here
+                            }
+                        }
+                );
+                dialog.show();
+            }
 
-                // Calculate scaled dimensions preserving aspect ratio
-                if (origWidth > origHeight) {
-                    scaledWidth = maxWidth;
-                    scaledHeight = Math.round(maxWidth / aspectRatio);
-                } else {
-                    scaledHeight = maxHeight;
-                    scaledWidth = Math.round(maxHeight * aspectRatio);
+            @Override
+            public void onFailure(Exception e) {
+                testCaseOcr = null;
+                Toast.makeText(MainActivity.this, "OCR failed for Test Case", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+    private void processPreconditionImage(Uri uri, boolean applyProposal) {
+        if (preconditionOcr != null) {
+            preconditionOcr.cancel();
+        }
+        preconditionOcr = ocrService.recognize(uri, new OcrService.Callback() {
+            @Override
+            public void onSuccess(OcrResult result) {
+                preconditionOcr = null;
+
+                FieldExtractor.Proposal proposal = fieldExtractor.extract(result);
+                if (applyProposal && proposal.preconditions != null && testCasePreconditions.isEmpty()) {
+                    setPreconditions(proposal.preconditions);
+                    Toast.makeText(MainActivity.this, "Preconditions detected, tap OK or correct the selection",
+                            Toast.LENGTH_SHORT).show();
                 }
 
-                // Matrix-based scaling for better quality
-                Matrix matrix = new Matrix();
-                float scaleWidth = scaledWidth / (float) origWidth;
-                float scaleHeight = scaledHeight / (float) origHeight;
-                matrix.setScale(scaleWidth, scaleHeight);
+                // ✅ Show the overlay dialog with precondition drag-select mode
+                OverlayDialog dialog = new OverlayDialog(
+                        MainActivity.this,
+                        uri,
+                        result,
+                        "precondition",
+                        bitmapPool,
+                        ocrService,
+                        fieldExtractor,
+                        proposal,
+                        new OverlayDialog.OnBlockSelectedListener() {
+                            @Override
+                            public void onTestCaseSelected(String id, String title) {
+                                // No action needed here
+                            }
+
+                            @Override
+                            public void onPreconditionSelected(String preconditionText) {
+                                setPreconditions(preconditionText);
+                            }
+                        }
+                );
+                dialog.show();
+            }
 
-                Bitmap scaled = Bitmap.createBitmap(original, 0, 0, scaledWidth, scaledHeight);
+            @Override
+            public void onFailure(Exception e) {
+                preconditionOcr = null;
+                Toast.makeText(MainActivity.this, "OCR failed for Precondition", Toast.LENGTH_SHORT).show();
+                e.printStackTrace();
+            }
+        });
+    }
 
-                // Enhance quality: anti-aliasing and filtering
-                Canvas canvas = new Canvas(scaled);
-                Paint paint = new Paint();
-                paint.setAntiAlias(true);
-                paint.setFilterBitmap(true);
-                paint.setDither(true);
-                canvas.drawBitmap(scaled, 0, 0, paint);
+    private void setTestCase(String id, String title) {
+        testCaseId = id;
+        artifactStore.setTestCaseId(id);
+        testCaseTitle = title;
+        sessionStore.setTestCase(id, title);
+    }
 
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    private void setPreconditions(String preconditions) {
+        testCasePreconditions = preconditions;
+        sessionStore.setPreconditions(preconditions);
+    }
 
-                // JPEG compression at 85 to 90 quality for balance between size and clarity
-                scaled.compress(Bitmap.CompressFormat.JPEG, 40, baos);
+    // A field rather than per generation, so the instance recreated after a rotation can attach it
+    private final DocumentGenerator.GenerationCallback generationCallback = new DocumentGenerator.GenerationCallback() {
+        @Override
+        public void onProgress(int completedSteps, int totalSteps) {
+            textStatus.setText("Generating document...\nStep " + completedSteps + " of " + totalSteps + " done");
+        }
 
-                InputStream is = new ByteArrayInputStream(baos.toByteArray());
+        @Override
+        public void onComplete(File file) {
+            btnGenerateDoc.setText("Generate Word Document");
+            artifactStore.commit(file);
+            artifactStore.touch(allStepImagePaths());
+            sessionStore.markFinished();
+            generatedDocFile = file;
+            btnShareDoc.setVisibility(View.VISIBLE);
+            String size = String.format(Locale.US, "%.1f MB", file.length() / (1024.0 * 1024.0));
+            textStatus.setText("Document ready: " + file.getName() + " (" + size + ")");
+            if (file.length() <= MAX_DOCUMENT_BYTES) {
+                Toast.makeText(MainActivity.this, "Word file saved (" + size + ")", Toast.LENGTH_LONG).show();
+            } else {
+                Toast.makeText(MainActivity.this, "Word file is " + size + ", over the 10MB limit", Toast.LENGTH_LONG).show();
+            }
+        }
 
-                XWPFParagraph imagePara = document.createParagraph();
-                imagePara.setAlignment(ParagraphAlignment.CENTER);
-                XWPFRun imageRun = imagePara.createRun();
+        @Override
+        public void onError(File file, Exception e) {
+            btnGenerateDoc.setText("Generate Word Document");
+            artifactStore.discard(file);
+            textStatus.setText("Document generation failed");
+            Toast.makeText(MainActivity.this, "Error generating Word doc", Toast.LENGTH_SHORT).show();
+        }
 
-                int emuWidth, emuHeight;
-                boolean wantsTwoImgs = stepToggleMap.getOrDefault(step, false);
+        @Override
+        public void onCancelled(File file) {
+            btnGenerateDoc.setText("Generate Word Document");
+            artifactStore.discard(file);
+            textStatus.setText("Document generation cancelled");
+        }
 
-                if (!wantsTwoImgs) {
-                    // Max 3 inches width for two images side by side
-                    emuWidth = (int) (3.0 * Units.EMU_PER_INCH);
-                    emuHeight = (int) ((3.0 * scaledHeight / (float) scaledWidth) * Units.EMU_PER_INCH);
-                } else {
-                    // Max 6 inches width for single image
-                    emuWidth = (int) (6.0 * Units.EMU_PER_INCH);
-                    emuHeight = (int) ((6.0 * scaledHeight / (float) scaledWidth) * Units.EMU_PER_INCH);
-                }
+        @Override
+        public void onDuplicatesSkipped(List<String> imagePaths) {
+            Toast.makeText(MainActivity.this, "Skipped " + imagePaths.size()
+                    + " near-duplicate image(s), kept the sharpest", Toast.LENGTH_SHORT).show();
+        }
+    };
 
-                imageRun.addPicture(is, Document.PICTURE_TYPE_JPEG, "step_image.jpg", emuWidth, emuHeight);
+    private void generateWordDocument() {
+        if (documentGenerator.isRunning()) {
+            documentGenerator.cancel();
+            textStatus.setText("Cancelling document generation...");
+            return;
+        }
 
-                is.close();
-                original.recycle();
-                scaled.recycle();
+        btnGenerateDoc.setEnabled(false);
+        textStatus.setText("Checking for near-duplicate images...");
+        documentGenerator.findDuplicates(stepImages, DUPLICATE_CHECK_POLICY, duplicates -> {
+            if (isDestroyed()) {
+                return;
+            }
+            btnGenerateDoc.setEnabled(true);
+            if (duplicates.isEmpty()) {
+                startGeneration(DocumentGenerator.DuplicatePolicy.KEEP_ALL);
+                return;
             }
+            new AlertDialog.Builder(this)
+                    .setTitle("Near-duplicate images")
+                    .setMessage(duplicates.size() + " image(s) look like retakes of another image in the same step ("
+                            + stepsOf(duplicates) + "). Leave them out and keep only the sharpest of each?")
+                    .setPositiveButton("Leave out", (dialog, which) -> startGeneration(DUPLICATE_CHECK_POLICY))
+                    .setNegativeButton("Keep all", (dialog, which) ->
+                            startGeneration(DocumentGenerator.DuplicatePolicy.KEEP_ALL))
+                    .setOnCancelListener(dialog -> updateStatusOrIdle())
+                    .show();
+        });
+    }
 
-            document.createParagraph().setPageBreak(true);
+    // "step 2, step 5" for the steps that hold any of paths
+    private String stepsOf(List<String> paths) {
+        StringBuilder steps = new StringBuilder();
+        for (Map.Entry<Integer, List<String>> entry : new TreeMap<>(stepImages).entrySet()) {
+            if (!Collections.disjoint(entry.getValue(), paths)) {
+                if (steps.length() > 0) {
+                    steps.append(", ");
+                }
+                steps.append("step ").append(entry.getKey());
+            }
         }
-            long millis = System.currentTimeMillis();
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
-            String date = sdf.format(new Date(millis));
+        return steps.toString();
+    }
+
+    private void startGeneration(DocumentGenerator.DuplicatePolicy duplicatePolicy) {
+        long millis = System.currentTimeMillis();
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
+        String date = sdf.format(new Date(millis));
+
+        String fileName = selectedPrefix + "_" + testCaseId + "_" + date + "_Passed" + ".docx";
+        File file = artifactStore.newDocument(fileName);
 
-        String fileName = selectedPrefix +"_"+ testCaseId+"_"+ date+"_Passed"+ ".docx";
-        File file = new File(getExternalFilesDir(null), fileName);
-        FileOutputStream out = new FileOutputStream(file);
-        document.write(out);
-        out.close();
-        document.close();
+        Map<CoverPageTemplate.Field, String> coverValues = new EnumMap<>(CoverPageTemplate.Field.class);
+        coverValues.put(CoverPageTemplate.Field.TCERID, testCaseId);
+        coverValues.put(CoverPageTemplate.Field.TITLE, testCaseTitle);
+        coverValues.put(CoverPageTemplate.Field.PRECONDITIONS, testCasePreconditions);
 
-        generatedDocFile = file;
-        btnShareDoc.setVisibility(View.VISIBLE);
+        DocumentGenerator.Request request = new DocumentGenerator.Request(
+                coverValues, stepImages, stepToggleMap, file, MAX_DOCUMENT_BYTES, duplicatePolicy);
 
-        Toast.makeText(this, "Word file saved under 10MB!", Toast.LENGTH_LONG).show();
+        btnGenerateDoc.setText("Cancel Generation");
+        btnShareDoc.setVisibility(View.GONE);
 
-    } catch (Exception e) {
-        e.printStackTrace();
-        Toast.makeText(this, "Error generating Word doc", Toast.LENGTH_SHORT).show();
+        documentGenerator.generate(request, generationCallback);
+    }
+
+    private List<String> allStepImagePaths() {
+        List<String> paths = new ArrayList<>();
+        for (List<String> images : stepImages.values()) {
+            paths.addAll(images);
+        }
+        return paths;
+    }
+
+    @Override
+    protected void onDestroy() {
+        // The service outlives this activity; results must not reach a dead one
+        if (testCaseOcr != null) {
+            testCaseOcr.cancel();
+        }
+        if (preconditionOcr != null) {
+            preconditionOcr.cancel();
+        }
+        // The generator, transcoder and preprocessor are application-scoped; a rotation hands a running
+        // generation to the next instance, leaving the screen for good cancels it
+        documentGenerator.setCallback(null);
+        capturePreprocessor.setListener(null);
+        if (!isChangingConfigurations()) {
+            documentGenerator.cancel();
+            bitmapPool.clear();
+        }
+        thumbnailLoader.shutdown();
+        galleryImporter.shutdown();
+        artifactStore.shutdown();
+        sessionStore.shutdown();
+        super.onDestroy();
     }
-}
 }
@@ -0,0 +1,91 @@
+package com.tejas.artifactgenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Collapses near-identical step images (double captures, blurry retakes) down to the
+ * sharpest frame of each group. The kept frame takes the slot of the group's first
+ * capture so the document order does not shift. Images without a fingerprint are
+ * always kept.
+ */
+public final class NearDuplicates {
+
+    private NearDuplicates() {
+    }
+
+    private static class Kept {
+        final int step;
+        String path;
+        ImageFingerprint fingerprint;
+
+        Kept(int step, String path, ImageFingerprint fingerprint) {
+            this.step = step;
+            this.path = path;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * Rewrites {@code stepImages} in place and returns the paths that were dropped.
+     * Across steps, an image is only dropped once its own step already keeps another
+     * one, so no step heading is left without a picture.
+     */
+    public static List<String> collapse(SortedMap<Integer, List<String>> stepImages,
+                                        Map<String, ImageFingerprint> fingerprints, boolean acrossSteps) {
+        List<String> dropped = new ArrayList<>();
+        List<Kept> earlierSteps = new ArrayList<>();
+        for (Map.Entry<Integer, List<String>> entry : stepImages.entrySet()) {
+            int step = entry.getKey();
+            List<Kept> thisStep = new ArrayList<>();
+            for (String path : entry.getValue()) {
+                ImageFingerprint fingerprint = fingerprints.get(path);
+                Kept match = null;
+                if (fingerprint != null) {
+                    match = findMatch(thisStep, fingerprint);
+                    if (match == null && acrossSteps && !thisStep.isEmpty()) {
+                        match = findMatch(earlierSteps, fingerprint);
+                    }
+                }
+                if (match == null) {
+                    thisStep.add(new Kept(step, path, fingerprint));
+                    continue;
+                }
+                if (fingerprint.sharpness > match.fingerprint.sharpness) {
+                    dropped.add(match.path);
+                    match.path = path;
+                    match.fingerprint = fingerprint;
+                } else {
+                    dropped.add(path);
+                }
+            }
+            earlierSteps.addAll(thisStep);
+        }
+
+        for (Map.Entry<Integer, List<String>> entry : stepImages.entrySet()) {
+            entry.getValue().clear();
+        }
+        for (Kept kept : earlierSteps) {
+            stepImages.get(kept.step).add(kept.path);
+        }
+        return dropped;
+    }
+
+    private static Kept findMatch(List<Kept> candidates, ImageFingerprint fingerprint) {
+        Kept best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (Kept candidate : candidates) {
+            if (candidate.fingerprint == null) {
+                continue;
+            }
+            int distance = candidate.fingerprint.distanceTo(fingerprint);
+            if (distance <= ImageFingerprint.MAX_DUPLICATE_DISTANCE && distance < bestDistance) {
+                best = candidate;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,186 @@
+package com.tejas.artifactgenerator;
+
+import android.graphics.Rect;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Disk cache of {@link OcrResult}s, keyed by a hash of the image bytes plus the pass that
+ * produced them, so reopening the overlay for an image that was already read skips
+ * decoding and recognition entirely. Entries are a small binary encoding of the block,
+ * line and element tree with their boxes. Least recently used entries are evicted once
+ * the directory grows past the size cap; unreadable entries are deleted on sight.
+ */
+public class OcrCache {
+
+    private static final String TAG = "OcrCache";
+    private static final String SUFFIX = ".ocr";
+    private static final int MAGIC = 0x4f435231; // "OCR1"
+    private static final int FORMAT_VERSION = 1;
+
+    private final File cacheDir;
+    private final long maxBytes;
+    private long currentBytes = -1;
+
+    public OcrCache(File cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Log.w(TAG, "Could not create cache dir " + cacheDir);
+        }
+    }
+
+    // Returns the cached result, or null on a miss
+    public synchronized OcrResult get(String key) {
+        File entry = entryFile(key);
+        if (!entry.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)))) {
+            OcrResult result = read(in);
+            entry.setLastModified(System.currentTimeMillis());
+            return result;
+        } catch (IOException e) {
+            Log.w(TAG, "Dropping unreadable entry " + entry.getName(), e);
+            removeEntry(entry);
+            return null;
+        }
+    }
+
+    public synchronized void put(String key, OcrResult result) {
+        File entry = entryFile(key);
+        File temp = new File(cacheDir, key + ".tmp");
+        ensureSizeKnown();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            write(out, result);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write cache entry", e);
+            temp.delete();
+            return;
+        }
+        if (entry.exists()) {
+            currentBytes -= entry.length();
+        }
+        if (!temp.renameTo(entry)) {
+            temp.delete();
+            return;
+        }
+        currentBytes += entry.length();
+        trimToSize();
+    }
+
+    private static void write(DataOutputStream out, OcrResult result) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(result.imageWidth);
+        out.writeInt(result.imageHeight);
+        out.writeInt(result.blocks.size());
+        for (OcrResult.Block block : result.blocks) {
+            out.writeUTF(block.text);
+            writeRect(out, block.box);
+            out.writeInt(block.lines.size());
+            for (OcrResult.Line line : block.lines) {
+                out.writeUTF(line.text);
+                writeRect(out, line.box);
+                out.writeInt(line.elements.size());
+                for (OcrResult.Element element : line.elements) {
+                    out.writeUTF(element.text);
+                    writeRect(out, element.box);
+                }
+            }
+        }
+    }
+
+    private static OcrResult read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unknown OCR cache format");
+        }
+        int imageWidth = in.readInt();
+        int imageHeight = in.readInt();
+        int blockCount = in.readInt();
+        List<OcrResult.Block> blocks = new ArrayList<>(blockCount);
+        for (int b = 0; b < blockCount; b++) {
+            String blockText = in.readUTF();
+            Rect blockBox = readRect(in);
+            int lineCount = in.readInt();
+            List<OcrResult.Line> lines = new ArrayList<>(lineCount);
+            for (int l = 0; l < lineCount; l++) {
+                String lineText = in.readUTF();
+                Rect lineBox = readRect(in);
+                int elementCount = in.readInt();
+                List<OcrResult.Element> elements = new ArrayList<>(elementCount);
+                for (int e = 0; e < elementCount; e++) {
+                    elements.add(new OcrResult.Element(in.readUTF(), readRect(in)));
+                }
+                lines.add(new OcrResult.Line(lineText, lineBox, elements));
+            }
+            blocks.add(new OcrResult.Block(blockText, blockBox, lines));
+        }
+        return new OcrResult(imageWidth, imageHeight, blocks);
+    }
+
+    private static void writeRect(DataOutputStream out, Rect rect) throws IOException {
+        out.writeInt(rect.left);
+        out.writeInt(rect.top);
+        out.writeInt(rect.right);
+        out.writeInt(rect.bottom);
+    }
+
+    private static Rect readRect(DataInputStream in) throws IOException {
+        return new Rect(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+    }
+
+    private File entryFile(String key) {
+        return new File(cacheDir, key + SUFFIX);
+    }
+
+    private void removeEntry(File entry) {
+        long length = entry.length();
+        if (entry.delete() && currentBytes >= 0) {
+            currentBytes -= length;
+        }
+    }
+
+    private void ensureSizeKnown() {
+        if (currentBytes >= 0) {
+            return;
+        }
+        currentBytes = 0;
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                currentBytes += file.length();
+            }
+        }
+    }
+
+    private void trimToSize() {
+        if (currentBytes <= maxBytes) {
+            return;
+        }
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        // Oldest access first; get() refreshes lastModified on every hit
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (currentBytes <= maxBytes) {
+                break;
+            }
+            removeEntry(file);
+        }
+        Log.d(TAG, "Cache trimmed to " + currentBytes + " bytes");
+    }
+}
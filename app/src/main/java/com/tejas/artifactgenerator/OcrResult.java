@@ -0,0 +1,187 @@
+package com.tejas.artifactgenerator;
+
+import android.graphics.Rect;
+
+import com.google.mlkit.vision.text.Text;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Recognized text in the upright coordinates of the full-resolution image, whatever
+ * scale or crop the recognizer actually saw. ML Kit's own {@link Text} objects cannot be
+ * rebuilt with different boxes, so a downscaled or region pass is copied into these.
+ */
+public final class OcrResult {
+
+    // What a tap or drag in the overlay picks: whole blocks, lines or single words
+    public enum Granularity {
+        BLOCK, LINE, ELEMENT
+    }
+
+    // Anything the overlay can select
+    public abstract static class Item {
+        public final String text;
+        public final Rect box;
+
+        Item(String text, Rect box) {
+            this.text = text;
+            this.box = box;
+        }
+    }
+
+    public static final class Element extends Item {
+        Element(String text, Rect box) {
+            super(text, box);
+        }
+    }
+
+    public static final class Line extends Item {
+        public final List<Element> elements;
+
+        Line(String text, Rect box, List<Element> elements) {
+            super(text, box);
+            this.elements = elements;
+        }
+    }
+
+    public static final class Block extends Item {
+        public final List<Line> lines;
+
+        Block(String text, Rect box, List<Line> lines) {
+            super(text, box);
+            this.lines = lines;
+        }
+    }
+
+    public final int imageWidth;
+    public final int imageHeight;
+    public final List<Block> blocks;
+    // Flattened items and their grid per granularity, built on first use
+    private final List<List<Item>> items = new ArrayList<>(Collections.nCopies(Granularity.values().length, null));
+    private final SpatialIndex[] indexes = new SpatialIndex[Granularity.values().length];
+
+    public OcrResult(int imageWidth, int imageHeight, List<Block> blocks) {
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.blocks = Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * Copies a recognition made on a picture that is {@code scale} times the size of the
+     * full image and whose origin sits at (offsetX, offsetY) in full-image pixels.
+     * Elements without a box are dropped, since nothing can select them.
+     */
+    public static OcrResult from(Text text, float scale, int offsetX, int offsetY,
+                                 int imageWidth, int imageHeight) {
+        List<Block> blocks = new ArrayList<>();
+        for (Text.TextBlock block : text.getTextBlocks()) {
+            Rect blockBox = map(block.getBoundingBox(), scale, offsetX, offsetY);
+            if (blockBox == null) {
+                continue;
+            }
+            List<Line> lines = new ArrayList<>();
+            for (Text.Line line : block.getLines()) {
+                Rect lineBox = map(line.getBoundingBox(), scale, offsetX, offsetY);
+                if (lineBox == null) {
+                    continue;
+                }
+                List<Element> elements = new ArrayList<>();
+                for (Text.Element element : line.getElements()) {
+                    Rect elementBox = map(element.getBoundingBox(), scale, offsetX, offsetY);
+                    if (elementBox != null) {
+                        elements.add(new Element(element.getText(), elementBox));
+                    }
+                }
+                lines.add(new Line(line.getText(), lineBox, Collections.unmodifiableList(elements)));
+            }
+            blocks.add(new Block(block.getText(), blockBox, Collections.unmodifiableList(lines)));
+        }
+        return new OcrResult(imageWidth, imageHeight, blocks);
+    }
+
+    // Blocks, lines or elements in reading order; positions match the index's results
+    public List<Item> items(Granularity granularity) {
+        List<Item> flat = items.get(granularity.ordinal());
+        if (flat == null) {
+            flat = new ArrayList<>();
+            for (Block block : blocks) {
+                if (granularity == Granularity.BLOCK) {
+                    flat.add(block);
+                    continue;
+                }
+                for (Line line : block.lines) {
+                    if (granularity == Granularity.LINE) {
+                        flat.add(line);
+                    } else {
+                        flat.addAll(line.elements);
+                    }
+                }
+            }
+            flat = Collections.unmodifiableList(flat);
+            items.set(granularity.ordinal(), flat);
+        }
+        return flat;
+    }
+
+    // Grid over items(granularity), for hit-testing without scanning every box
+    public SpatialIndex index(Granularity granularity) {
+        SpatialIndex index = indexes[granularity.ordinal()];
+        if (index == null) {
+            List<Item> flat = items(granularity);
+            int[] boxes = new int[flat.size() * 4];
+            for (int i = 0; i < flat.size(); i++) {
+                Rect box = flat.get(i).box;
+                boxes[i * 4] = box.left;
+                boxes[i * 4 + 1] = box.top;
+                boxes[i * 4 + 2] = box.right;
+                boxes[i * 4 + 3] = box.bottom;
+            }
+            index = new SpatialIndex(imageWidth, imageHeight, boxes);
+            indexes[granularity.ordinal()] = index;
+        }
+        return index;
+    }
+
+    /**
+     * Text of the lines whose centre falls inside area, one per output line. Used on a
+     * refined region to drop neighbouring text that only came along as padding. When
+     * area is a single word, no line is centred in it, so the words inside it are used.
+     */
+    public String textWithin(Rect area) {
+        StringBuilder joined = new StringBuilder();
+        for (Block block : blocks) {
+            for (Line line : block.lines) {
+                if (area.contains(line.box.centerX(), line.box.centerY())) {
+                    if (joined.length() > 0) {
+                        joined.append('\n');
+                    }
+                    joined.append(line.text);
+                }
+            }
+        }
+        if (joined.length() == 0) {
+            for (Item element : items(Granularity.ELEMENT)) {
+                if (area.contains(element.box.centerX(), element.box.centerY())) {
+                    if (joined.length() > 0) {
+                        joined.append(' ');
+                    }
+                    joined.append(element.text);
+                }
+            }
+        }
+        return joined.toString();
+    }
+
+    private static Rect map(Rect box, float scale, int offsetX, int offsetY) {
+        if (box == null) {
+            return null;
+        }
+        return new Rect(
+                offsetX + Math.round(box.left / scale),
+                offsetY + Math.round(box.top / scale),
+                offsetX + Math.round(box.right / scale),
+                offsetY + Math.round(box.bottom / scale));
+    }
+}
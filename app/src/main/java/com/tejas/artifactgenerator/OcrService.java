@@ -0,0 +1,403 @@
+package com.tejas.artifactgenerator;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructStat;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.TextRecognition;
+import com.google.mlkit.vision.text.TextRecognizer;
+import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * App-wide text recognition. Owns the one ML Kit recognizer, loads its model in the
+ * background at startup so the first capture does not pay for it, and prepares input
+ * images off the main thread. Recognition runs in two passes:
+ * {@link #recognize} reads a downscaled upright copy of the photo, which is enough to
+ * find the blocks quickly, and {@link #refine} re-reads one region at full resolution
+ * for accurate text once the tester has picked it. Both report boxes in full-size
+ * upright coordinates. Results are kept in an {@link OcrCache} keyed by the image's
+ * content, so reopening an image that was already read is instant. Requests for work
+ * that is already running join it instead of starting another. Each caller gets a
+ * handle it can cancel, and every request fails with a {@link TimeoutException} if it
+ * takes too long. All bookkeeping happens on the main thread.
+ */
+public class OcrService {
+
+    private static final String TAG = "OcrService";
+    // Well past a normal recognition; only a stuck decode or model load gets here
+    private static final long TIMEOUT_MS = 20_000;
+    private static final int WARM_UP_SIZE = 32;
+    // Long side of the first pass: block boxes are still found, at a fraction of a 12MP photo's cost
+    private static final int OVERVIEW_LONG_SIDE = 1280;
+    // A refine region is decoded at full resolution unless it is larger than this
+    private static final int REGION_MAX_SIDE = 2560;
+    // Extra context around a refined region, as a fraction of its height, so edge glyphs are whole
+    private static final float REGION_PADDING = 0.25f;
+    // Part of every cache key, so a change to the recognizer options misses old entries
+    private static final String OPTIONS_TAG = "latin";
+    // Well over one session's OCR captures; anything older is simply hashed again
+    private static final int MAX_CONTENT_HASHES = 256;
+
+    public interface Callback {
+        void onSuccess(OcrResult result);
+
+        void onFailure(Exception e);
+    }
+
+    /** One caller's interest in a request; cancelling it never affects other callers. */
+    public final class Handle {
+        private final String key;
+        private final Callback callback;
+
+        private Handle(String key, Callback callback) {
+            this.key = key;
+            this.callback = callback;
+        }
+
+        public void cancel() {
+            Request request = inFlight.get(key);
+            if (request != null && request.handles.remove(this) && request.handles.isEmpty()) {
+                // Nobody is waiting: skip the work if it has not started, drop the result if it has
+                finish(request);
+            }
+        }
+    }
+
+    private final class Request {
+        final String key;
+        final List<Handle> handles = new ArrayList<>();
+        final Runnable timeout;
+        boolean finished;
+
+        Request(String key) {
+            this.key = key;
+            this.timeout = () -> fail(this, new TimeoutException("OCR timed out after " + TIMEOUT_MS + " ms"));
+        }
+    }
+
+    // A content hash with the size and mtime of the file version it was taken from
+    private static final class ContentHash {
+        final long length;
+        final long lastModified;
+        final String hash;
+
+        ContentHash(long length, long lastModified, String hash) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+    // An upright picture for the recognizer and where it sits in the full image
+    private static final class Prepared {
+        final Bitmap bitmap;
+        final float scale;
+        final int offsetX;
+        final int offsetY;
+        final int imageWidth;
+        final int imageHeight;
+
+        Prepared(Bitmap bitmap, float scale, int offsetX, int offsetY, int imageWidth, int imageHeight) {
+            this.bitmap = bitmap;
+            this.scale = scale;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            this.imageWidth = imageWidth;
+            this.imageHeight = imageHeight;
+        }
+    }
+
+    private interface Preparation {
+        Prepared prepare() throws IOException;
+    }
+
+    private final Context context;
+    private final OcrCache cache;
+    // Keyed by URI and only trusted while the file behind it keeps its size and mtime
+    private final LruCache<String, ContentHash> contentHashes = new LruCache<>(MAX_CONTENT_HASHES);
+    private final TextRecognizer recognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "ocr-decode"));
+    private final Map<String, Request> inFlight = new HashMap<>();
+
+    public OcrService(Context context, OcrCache cache) {
+        this.context = context.getApplicationContext();
+        this.cache = cache;
+    }
+
+    // Runs one tiny recognition so the model is loaded before the first real capture
+    public void warmUp() {
+        decodeExecutor.execute(() -> {
+            Bitmap blank = Bitmap.createBitmap(WARM_UP_SIZE, WARM_UP_SIZE, Bitmap.Config.ARGB_8888);
+            long start = System.currentTimeMillis();
+            recognizer.process(InputImage.fromBitmap(blank, 0))
+                    .addOnCompleteListener(task -> {
+                        blank.recycle();
+                        Log.d(TAG, "Recognizer warmed up in " + (System.currentTimeMillis() - start) + " ms");
+                    });
+        });
+    }
+
+    // Fast first pass over a downscaled copy of the whole image
+    public Handle recognize(Uri uri, Callback callback) {
+        return submit(uri, uri.toString(), "ov" + OVERVIEW_LONG_SIDE, () -> prepareOverview(uri), callback);
+    }
+
+    // Full-resolution pass over one region, given in upright full-image coordinates
+    public Handle refine(Uri uri, Rect region, Callback callback) {
+        Rect copy = new Rect(region);
+        String area = copy.left + "_" + copy.top + "_" + copy.right + "_" + copy.bottom;
+        return submit(uri, uri + "#" + area, "rg" + REGION_MAX_SIDE + "_" + area,
+                () -> prepareRegion(uri, copy), callback);
+    }
+
+    private Handle submit(Uri uri, String key, String passTag, Preparation preparation, Callback callback) {
+        Request request = inFlight.get(key);
+        boolean joined = request != null;
+        if (!joined) {
+            request = new Request(key);
+            inFlight.put(key, request);
+        }
+        Handle handle = new Handle(key, callback);
+        request.handles.add(handle);
+        if (joined) {
+            return handle;
+        }
+
+        Request started = request;
+        mainHandler.postDelayed(started.timeout, TIMEOUT_MS);
+        decodeExecutor.execute(() -> {
+            if (isFinished(started)) {
+                return; // cancelled before the decode started
+            }
+            String cacheKey;
+            Prepared prepared;
+            try {
+                cacheKey = contentHash(uri) + "_" + OPTIONS_TAG + "_" + passTag;
+                OcrResult cached = cache.get(cacheKey);
+                if (cached != null) {
+                    mainHandler.post(() -> succeed(started, cached));
+                    return;
+                }
+                prepared = preparation.prepare();
+            } catch (IOException | RuntimeException e) {
+                mainHandler.post(() -> fail(started, e));
+                return;
+            }
+            recognizer.process(InputImage.fromBitmap(prepared.bitmap, 0))
+                    .addOnSuccessListener(text -> {
+                        OcrResult result = OcrResult.from(text, prepared.scale, prepared.offsetX,
+                                prepared.offsetY, prepared.imageWidth, prepared.imageHeight);
+                        decodeExecutor.execute(() -> cache.put(cacheKey, result));
+                        succeed(started, result);
+                    })
+                    .addOnFailureListener(e -> fail(started, e))
+                    .addOnCompleteListener(task -> prepared.bitmap.recycle());
+        });
+        return handle;
+    }
+
+    private Prepared prepareOverview(Uri uri) throws IOException {
+        ImageOrientation orientation = readOrientation(uri);
+        BitmapFactory.Options options = readBounds(uri);
+        int storedLongSide = Math.max(options.outWidth, options.outHeight);
+        int imageWidth = orientation.uprightWidth(options.outWidth, options.outHeight);
+        int imageHeight = orientation.uprightHeight(options.outWidth, options.outHeight);
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = ImageSizing.computeSampleSize(storedLongSide, OVERVIEW_LONG_SIDE);
+        Bitmap decoded;
+        try (InputStream in = open(uri)) {
+            decoded = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (decoded == null) {
+            throw new IOException("Could not decode " + uri);
+        }
+
+        // Turn upright and finish the downscale in one filtered pass
+        float scale = Math.min(1f, OVERVIEW_LONG_SIDE / (float) Math.max(decoded.getWidth(), decoded.getHeight()));
+        Matrix matrix = orientation.toUpright(new Matrix(), decoded.getWidth(), decoded.getHeight());
+        matrix.postScale(scale, scale);
+        Bitmap upright = transform(decoded, matrix);
+        return new Prepared(upright, upright.getWidth() / (float) imageWidth, 0, 0, imageWidth, imageHeight);
+    }
+
+    private Prepared prepareRegion(Uri uri, Rect region) throws IOException {
+        ImageOrientation orientation = readOrientation(uri);
+        BitmapFactory.Options options = readBounds(uri);
+        int storedWidth = options.outWidth;
+        int storedHeight = options.outHeight;
+        int imageWidth = orientation.uprightWidth(storedWidth, storedHeight);
+        int imageHeight = orientation.uprightHeight(storedWidth, storedHeight);
+
+        int padding = Math.max(8, Math.round(region.height() * REGION_PADDING));
+        Rect padded = new Rect(
+                Math.max(0, region.left - padding),
+                Math.max(0, region.top - padding),
+                Math.min(imageWidth, region.right + padding),
+                Math.min(imageHeight, region.bottom + padding));
+        if (padded.width() <= 0 || padded.height() <= 0) {
+            throw new IOException("Region " + region + " is outside the image");
+        }
+
+        // Upright region back into stored pixels, which is what the region decoder reads
+        Matrix toStored = new Matrix();
+        orientation.toUpright(new Matrix(), storedWidth, storedHeight).invert(toStored);
+        RectF mapped = new RectF(padded);
+        toStored.mapRect(mapped);
+        Rect stored = new Rect();
+        mapped.round(stored);
+        if (!stored.intersect(new Rect(0, 0, storedWidth, storedHeight))) {
+            throw new IOException("Region " + region + " is outside the image");
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        while (Math.max(stored.width(), stored.height()) / options.inSampleSize > REGION_MAX_SIDE) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap decoded;
+        try (InputStream in = open(uri)) {
+            BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(in, false);
+            try {
+                decoded = decoder.decodeRegion(stored, options);
+            } finally {
+                decoder.recycle();
+            }
+        }
+        if (decoded == null) {
+            throw new IOException("Could not decode region of " + uri);
+        }
+
+        Bitmap upright = transform(decoded,
+                orientation.toUpright(new Matrix(), decoded.getWidth(), decoded.getHeight()));
+        return new Prepared(upright, upright.getWidth() / (float) padded.width(),
+                padded.left, padded.top, imageWidth, imageHeight);
+    }
+
+    private static Bitmap transform(Bitmap source, Matrix matrix) {
+        Bitmap result = Bitmap.createBitmap(source, 0, 0, source.getWidth(), source.getHeight(), matrix, true);
+        if (result != source) {
+            source.recycle();
+        }
+        return result;
+    }
+
+    private String contentHash(Uri uri) throws IOException {
+        String key = uri.toString();
+        StructStat stat = stat(uri);
+        ContentHash known = contentHashes.get(key);
+        if (stat != null && known != null && known.length == stat.st_size && known.lastModified == stat.st_mtime) {
+            return known.hash;
+        }
+        String hash;
+        try (InputStream in = open(uri)) {
+            hash = TranscodeCache.sha256(in);
+        }
+        if (stat != null) {
+            contentHashes.put(key, new ContentHash(stat.st_size, stat.st_mtime, hash));
+        }
+        return hash;
+    }
+
+    // Size and mtime of the file behind uri, or null when there is none and nothing may be remembered
+    private StructStat stat(Uri uri) {
+        try (ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(uri, "r")) {
+            return descriptor != null ? Os.fstat(descriptor.getFileDescriptor()) : null;
+        } catch (IOException | ErrnoException e) {
+            Log.w(TAG, "Cannot stat " + uri, e);
+            return null;
+        }
+    }
+
+    private ImageOrientation readOrientation(Uri uri) throws IOException {
+        try (InputStream in = open(uri)) {
+            return ImageOrientation.fromStream(in);
+        }
+    }
+
+    private BitmapFactory.Options readBounds(Uri uri) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = open(uri)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not an image: " + uri);
+        }
+        return options;
+    }
+
+    private InputStream open(Uri uri) throws IOException {
+        InputStream in = context.getContentResolver().openInputStream(uri);
+        if (in == null) {
+            throw new IOException("No stream for " + uri);
+        }
+        return in;
+    }
+
+    private boolean isFinished(Request request) {
+        // The flag is only written on the main thread; the decode thread just peeks at it
+        synchronized (request) {
+            return request.finished;
+        }
+    }
+
+    private void succeed(Request request, OcrResult result) {
+        for (Handle handle : finish(request)) {
+            handle.callback.onSuccess(result);
+        }
+    }
+
+    private void fail(Request request, Exception e) {
+        List<Handle> handles = finish(request);
+        if (!handles.isEmpty()) {
+            Log.w(TAG, "OCR failed for " + request.key, e);
+        }
+        for (Handle handle : handles) {
+            handle.callback.onFailure(e);
+        }
+    }
+
+    // Detaches a request exactly once and returns whoever is still waiting on it
+    private List<Handle> finish(Request request) {
+        synchronized (request) {
+            if (request.finished) {
+                return new ArrayList<>();
+            }
+            request.finished = true;
+        }
+        mainHandler.removeCallbacks(request.timeout);
+        if (inFlight.get(request.key) == request) {
+            inFlight.remove(request.key);
+        }
+        List<Handle> handles = new ArrayList<>(request.handles);
+        request.handles.clear();
+        return handles;
+    }
+}
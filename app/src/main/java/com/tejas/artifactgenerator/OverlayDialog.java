@@ -5,6 +5,7 @@ import android.content.Context;
 import android.graphics.*;
 import android.net.Uri;
 import android.os.Bundle;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.*;
 import android.widget.Button;
@@ -13,53 +14,210 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 
-import com.google.mlkit.vision.text.Text;
-
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
 public class OverlayDialog extends Dialog {
 
     private final Context context;
     private final Uri imageUri;
-    private final List<Text.TextBlock> blocks;
+    private final OcrResult ocrResult;
     private final OnBlockSelectedListener listener;
     private final String mode;
+    private final BitmapPool bitmapPool;
+    private final OcrService ocrService;
+    private final FieldExtractor fieldExtractor;
+    private final FieldExtractor.Proposal proposal;
+    // Full-resolution re-reads of the picked blocks, cancelled if the dialog goes away first
+    private final List<OcrService.Handle> refineHandles = new ArrayList<>();
+    private boolean refining;
+    // The dialog's reference to the displayed image, released when it is dismissed
+    private RefCountedBitmap displayedBitmap;
+    private ImageOrientation displayedOrientation = ImageOrientation.NORMAL;
 
 
     private OverlayView overlayView;
+    // test_case mode: the item holding the ID (may be null) and the items making up the title,
+    // kept in reading order
+    private OcrResult.Item idItem;
+    private final List<OcrResult.Item> titleItems = new ArrayList<>();
 
     public interface OnBlockSelectedListener {
         void onTestCaseSelected(String testCaseId, String testCaseTitle);
         void onPreconditionSelected(String preconditionText);
     }
 
-    public OverlayDialog(@NonNull Context context, Uri imageUri, List<Text.TextBlock> blocks, String mode, OnBlockSelectedListener listener) {
+    /**
+     * The proposal's blocks start out selected, so when the extractor got it right the
+     * user only confirms; taps and drags are for corrections.
+     */
+    public OverlayDialog(@NonNull Context context, Uri imageUri, OcrResult ocrResult, String mode,
+                         BitmapPool bitmapPool, OcrService ocrService, FieldExtractor fieldExtractor,
+                         FieldExtractor.Proposal proposal, OnBlockSelectedListener listener) {
         super(context, android.R.style.Theme_Black_NoTitleBar_Fullscreen);
         this.context = context;
         this.imageUri = imageUri;
-        this.blocks = blocks;
+        this.ocrResult = ocrResult;
         this.listener = listener;
         this.mode = mode;
+        this.bitmapPool = bitmapPool;
+        this.ocrService = ocrService;
+        this.fieldExtractor = fieldExtractor;
+        this.proposal = proposal;
     }
 
-    private Bitmap loadBitmapFromUri(Uri uri) {
-        try {
-            InputStream inputStream = context.getContentResolver().openInputStream(uri);
-            return BitmapFactory.decodeStream(inputStream);
+    // Decoded in stored orientation at roughly screen size; the view applies the EXIF tag and
+    // maps OCR boxes from full-image coordinates, so the smaller bitmap lines up with them
+    private RefCountedBitmap loadBitmapFromUri(Uri uri) {
+        try (InputStream inputStream = context.getContentResolver().openInputStream(uri)) {
+            displayedOrientation = ImageOrientation.fromStream(inputStream);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream inputStream = context.getContentResolver().openInputStream(uri)) {
+            BitmapFactory.decodeStream(inputStream, null, options);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int screenLongSide = Math.max(metrics.widthPixels, metrics.heightPixels);
+        options.inSampleSize = ImageSizing.computeSampleSize(
+                Math.max(options.outWidth, options.outHeight), screenLongSide);
+        try (InputStream inputStream = context.getContentResolver().openInputStream(uri)) {
+            return bitmapPool.decodeStream(inputStream, options);
         } catch (IOException e) {
             e.printStackTrace();
             return null;
         }
     }
 
-    private String extractTestCaseId(String text) {
-        Pattern pattern = Pattern.compile("SIS-\\d+", Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(text);
-        return matcher.find() ? matcher.group() : "Unknown-ID";
+    @Override
+    protected void onStop() {
+        super.onStop();
+        for (OcrService.Handle handle : refineHandles) {
+            handle.cancel();
+        }
+        refineHandles.clear();
+        if (displayedBitmap != null) {
+            overlayView.setData(null, ImageOrientation.NORMAL, null);
+            displayedBitmap.release();
+            displayedBitmap = null;
+        }
+    }
+
+    /**
+     * Re-reads each picked block at full resolution and hands back the texts in the same
+     * order. A block whose refine fails or finds nothing keeps its first-pass text.
+     */
+    private void refineTexts(List<? extends OcrResult.Item> picked, Consumer<List<String>> onDone) {
+        refining = true;
+        Toast.makeText(context, "Reading selected text...", Toast.LENGTH_SHORT).show();
+        String[] texts = new String[picked.size()];
+        int[] remaining = {picked.size()};
+        for (int i = 0; i < picked.size(); i++) {
+            int index = i;
+            OcrResult.Item block = picked.get(i);
+            refineHandles.add(ocrService.refine(imageUri, block.box, new OcrService.Callback() {
+                @Override
+                public void onSuccess(OcrResult result) {
+                    String refined = result.textWithin(block.box);
+                    finishOne(refined.trim().isEmpty() ? block.text : refined);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    finishOne(block.text);
+                }
+
+                private void finishOne(String text) {
+                    texts[index] = text;
+                    if (--remaining[0] == 0) {
+                        refining = false;
+                        refineHandles.clear();
+                        onDone.accept(Arrays.asList(texts));
+                    }
+                }
+            }));
+        }
+    }
+
+    private void showTestCaseSelection() {
+        List<OcrResult.Item> selected = new ArrayList<>();
+        if (idItem != null) {
+            selected.add(idItem);
+        }
+        for (OcrResult.Item item : titleItems) {
+            if (item != idItem) {
+                selected.add(item);
+            }
+        }
+        overlayView.setSelectedItems(selected);
+    }
+
+    // Adds a tapped title item in reading order, or takes it out again if it was already in
+    private void toggleTitleItem(OcrResult.Item item) {
+        if (titleItems.remove(item)) {
+            Toast.makeText(context, "Removed from title", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        titleItems.add(item);
+        List<OcrResult.Item> order = ocrResult.items(overlayView.getGranularity());
+        titleItems.sort((a, b) -> Integer.compare(order.indexOf(a), order.indexOf(b)));
+        Toast.makeText(context, "Added to title", Toast.LENGTH_SHORT).show();
+    }
+
+    private void confirmTestCase() {
+        // The document is filed under the ID, so there is no confirming without one
+        if (idItem == null) {
+            Toast.makeText(context, "Tap the test case ID first", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // ID first, then the title items; an item shared by both is read once
+        List<OcrResult.Item> picked = new ArrayList<>();
+        picked.add(idItem);
+        for (OcrResult.Item item : titleItems) {
+            if (item != idItem) {
+                picked.add(item);
+            }
+        }
+        boolean idSharesTitle = titleItems.isEmpty() || titleItems.contains(idItem);
+        refineTexts(picked, texts -> {
+            // The item was picked for its ID, so fall back to the first pass if the re-read lost it
+            String testCaseId = fieldExtractor.findId(texts.get(0));
+            if (testCaseId == null) {
+                testCaseId = fieldExtractor.findId(idItem.text);
+            }
+            if (testCaseId == null) {
+                Toast.makeText(context, "Could not read the test case ID", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            StringBuilder title = new StringBuilder();
+            int first = idSharesTitle ? 0 : 1;
+            for (int i = first; i < texts.size(); i++) {
+                // An item that carries the ID too only contributes what surrounds it to the title
+                String text = fieldExtractor.findId(texts.get(i)) != null
+                        ? fieldExtractor.withoutId(texts.get(i)) : texts.get(i);
+                title.append(text.replace("\n", " ").trim()).append(' ');
+            }
+            listener.onTestCaseSelected(testCaseId, title.toString().trim());
+            dismiss();
+        });
+    }
+
+    private static String granularityLabel(OcrResult.Granularity granularity) {
+        switch (granularity) {
+            case LINE:
+                return "Select: Lines";
+            case ELEMENT:
+                return "Select: Words";
+            default:
+                return "Select: Blocks";
+        }
     }
 
     @Override
@@ -72,103 +230,146 @@ public class OverlayDialog extends Dialog {
         // Layout setup
         FrameLayout container = new FrameLayout(context);
         overlayView = new OverlayView(context);
-        Bitmap bitmap = loadBitmapFromUri(imageUri);
-        overlayView.setData(bitmap, blocks);
+        displayedBitmap = loadBitmapFromUri(imageUri);
+        Bitmap bitmap = displayedBitmap != null ? displayedBitmap.get() : null;
+        overlayView.setData(bitmap, displayedOrientation, ocrResult);
         container.addView(overlayView);
 
+        Button okButton = new Button(context);
+        okButton.setText("OK");
+        okButton.setBackgroundColor(Color.DKGRAY);
+        okButton.setTextColor(Color.WHITE);
+
+        Button clearButton = new Button(context);
+        clearButton.setText("Clear");
+        clearButton.setBackgroundColor(Color.GRAY);
+        clearButton.setTextColor(Color.WHITE);
+
+        FrameLayout.LayoutParams okParams = new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT
+        );
+        okParams.gravity = Gravity.END | Gravity.BOTTOM;
+        okParams.setMargins(0, 0, 30, 30);
+        okButton.setLayoutParams(okParams);
+
+        FrameLayout.LayoutParams clearParams = new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT
+        );
+        clearParams.gravity = Gravity.START | Gravity.BOTTOM;
+        clearParams.setMargins(30, 0, 0, 30);
+        clearButton.setLayoutParams(clearParams);
+
+        // The proposal is made of lines, so it is shown and confirmed at line level
+        List<OcrResult.Line> proposedLines = new ArrayList<>();
+        if (mode.equals("precondition")) {
+            proposedLines.addAll(proposal.preconditionLines);
+        } else {
+            if (proposal.idLine != null) {
+                proposedLines.add(proposal.idLine);
+            }
+            proposedLines.addAll(proposal.titleLines);
+        }
+        if (!proposedLines.isEmpty()) {
+            overlayView.setGranularity(OcrResult.Granularity.LINE);
+        }
+
+        // Cycles what a tap or drag picks, for screens too dense to select whole blocks
+        Button granularityButton = new Button(context);
+        granularityButton.setText(granularityLabel(overlayView.getGranularity()));
+        granularityButton.setBackgroundColor(Color.GRAY);
+        granularityButton.setTextColor(Color.WHITE);
+        FrameLayout.LayoutParams granularityParams = new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT
+        );
+        granularityParams.gravity = Gravity.CENTER_HORIZONTAL | Gravity.BOTTOM;
+        granularityParams.setMargins(0, 0, 0, 30);
+        granularityButton.setLayoutParams(granularityParams);
+        granularityButton.setOnClickListener(v -> {
+            OcrResult.Granularity[] values = OcrResult.Granularity.values();
+            OcrResult.Granularity next = values[(overlayView.getGranularity().ordinal() + 1) % values.length];
+            overlayView.setGranularity(next);
+            idItem = null;
+            titleItems.clear();
+            granularityButton.setText(granularityLabel(next));
+        });
+
+        container.addView(okButton);
+        container.addView(clearButton);
+        container.addView(granularityButton);
+
         if (mode.equals("precondition")) {
-            Button okButton = new Button(context);
-            okButton.setText("OK");
-            okButton.setBackgroundColor(Color.DKGRAY);
-            okButton.setTextColor(Color.WHITE);
-
-            Button clearButton = new Button(context);
-            clearButton.setText("Clear");
-            clearButton.setBackgroundColor(Color.GRAY);
-            clearButton.setTextColor(Color.WHITE);
-
-            FrameLayout.LayoutParams okParams = new FrameLayout.LayoutParams(
-                    ViewGroup.LayoutParams.WRAP_CONTENT,
-                    ViewGroup.LayoutParams.WRAP_CONTENT
-            );
-            okParams.gravity = Gravity.END | Gravity.BOTTOM;
-            okParams.setMargins(0, 0, 30, 30);
-            okButton.setLayoutParams(okParams);
-
-            FrameLayout.LayoutParams clearParams = new FrameLayout.LayoutParams(
-                    ViewGroup.LayoutParams.WRAP_CONTENT,
-                    ViewGroup.LayoutParams.WRAP_CONTENT
-            );
-            clearParams.gravity = Gravity.START | Gravity.BOTTOM;
-            clearParams.setMargins(30, 0, 0, 30);
-            clearButton.setLayoutParams(clearParams);
-
-            container.addView(okButton);
-            container.addView(clearButton);
+            overlayView.setSelectedItems(proposal.preconditionLines);
 
             okButton.setOnClickListener(v -> {
-                List<Text.TextBlock> selectedBlocks = overlayView.getSelectedBlocks();
+                if (refining) {
+                    return;
+                }
+                List<OcrResult.Item> selectedBlocks = new ArrayList<>(overlayView.getSelectedItems());
                 if (selectedBlocks.isEmpty()) {
                     Toast.makeText(context, "No blocks selected", Toast.LENGTH_SHORT).show();
                     return;
                 }
 
-                StringBuilder combined = new StringBuilder();
-                for (Text.TextBlock block : selectedBlocks) {
-                    combined.append(block.getText().replace("\n", " ").trim()).append("\n");
-                }
+                refineTexts(selectedBlocks, texts -> {
+                    StringBuilder combined = new StringBuilder();
+                    for (String text : texts) {
+                        // The label line is selected when text follows the label on it
+                        String content = fieldExtractor.withoutPreconditionLabel(text.replace("\n", " "));
+                        if (!content.isEmpty()) {
+                            combined.append(content).append("\n");
+                        }
+                    }
 
-                listener.onPreconditionSelected(combined.toString().trim());
-                dismiss();
+                    listener.onPreconditionSelected(combined.toString().trim());
+                    dismiss();
+                });
             });
 
             clearButton.setOnClickListener(v -> {
                 overlayView.clearSelections();
                 Toast.makeText(context, "Selections cleared", Toast.LENGTH_SHORT).show();
             });
-        }
+        } else {
+            idItem = proposal.idLine;
+            titleItems.addAll(proposal.titleLines);
+            showTestCaseSelection();
 
+            okButton.setOnClickListener(v -> {
+                if (!refining) {
+                    confirmTestCase();
+                }
+            });
+
+            clearButton.setOnClickListener(v -> {
+                idItem = null;
+                titleItems.clear();
+                overlayView.clearSelections();
+                Toast.makeText(context, "Selections cleared", Toast.LENGTH_SHORT).show();
+            });
+        }
 
         setContentView(container);
 
         // Logic for tapping blocks (test_case)
         if (mode.equals("test_case")) {
-            List<Text.TextBlock> selectedBlocks = new ArrayList<>();
-
             overlayView.setOnTouchListener((v, event) -> {
-                if (event.getAction() == MotionEvent.ACTION_DOWN) {
-                    float x = event.getX();
-                    float y = event.getY();
-
-                    float scaleX = overlayView.getWidth() / (float) bitmap.getWidth();
-                    float scaleY = overlayView.getHeight() / (float) bitmap.getHeight();
-
-                    for (Text.TextBlock block : blocks) {
-                        Rect rect = block.getBoundingBox();
-                        if (rect != null) {
-                            Rect scaled = new Rect(
-                                    (int) (rect.left * scaleX),
-                                    (int) (rect.top * scaleY),
-                                    (int) (rect.right * scaleX),
-                                    (int) (rect.bottom * scaleY)
-                            );
-
-                            if (scaled.contains((int) x, (int) y)) {
-                                if (!selectedBlocks.contains(block)) {
-                                    selectedBlocks.add(block);
-                                }
-
-                                if (selectedBlocks.size() == 2) {
-                                    String testCaseId = extractTestCaseId(selectedBlocks.get(0).getText());
-                                    String testCaseTitle = selectedBlocks.get(1).getText().replace("\n", " ").trim();
-                                    listener.onTestCaseSelected(testCaseId, testCaseTitle);
-                                    dismiss();
-                                } else {
-                                    Toast.makeText(context, "Tap one more block", Toast.LENGTH_SHORT).show();
-                                }
-                                return true;
-                            }
+                if (event.getAction() == MotionEvent.ACTION_DOWN && !refining) {
+                    OcrResult.Item item = overlayView.hitTest(event.getX(), event.getY());
+                    if (item != null) {
+                        // A new item with an ID replaces the ID; anything else, including the ID
+                        // item tapped again, goes in or out of the title
+                        if (fieldExtractor.findId(item.text) != null && item != idItem
+                                && !titleItems.contains(item)) {
+                            idItem = item;
+                            Toast.makeText(context, "ID set", Toast.LENGTH_SHORT).show();
+                        } else {
+                            toggleTitleItem(item);
                         }
+                        showTestCaseSelection();
+                        return true;
                     }
                     Toast.makeText(context, "Tap on a valid block", Toast.LENGTH_SHORT).show();
                 }
@@ -6,100 +6,175 @@ import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
 
-import com.google.mlkit.vision.text.Text;
-
 import java.util.ArrayList;
 import java.util.List;
 
 public class OverlayView extends View {
 
-    private List<Text.TextBlock> textBlocks = new ArrayList<>();
-    private Bitmap imageBitmap;
-    private final List<Text.TextBlock> selectedBlocks = new ArrayList<>();
+    // Taps this close to a box still pick it, so single words stay reachable with a finger
+    private static final float TOUCH_RADIUS_DP = 12;
 
-    private float downX, downY, upX, upY;
+    private OcrResult ocrResult;
+    private OcrResult.Granularity granularity = OcrResult.Granularity.BLOCK;
+    private Bitmap imageBitmap;
+    // OCR boxes are in upright full-image coordinates; the bitmap may be a smaller copy in
+    // stored orientation, drawn through its EXIF tag and scaled into the same frame
+    private ImageOrientation orientation = ImageOrientation.NORMAL;
+    private int imageWidth;
+    private int imageHeight;
+    private final Matrix drawMatrix = new Matrix();
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final List<OcrResult.Item> selectedItems = new ArrayList<>();
+
+    // Everything touch and draw need is allocated once; queries run in image coordinates
+    private final Paint rectPaint = new Paint();
+    private final Paint selectedPaint = new Paint();
+    private final Paint dragPaint = new Paint();
+    private final RectF scratchRect = new RectF();
+    private final RectF selectionRect = new RectF();
+    private int[] queryResults = new int[0];
+
+    private float downX, downY;
     private boolean isDragging = false;
-    private RectF selectionRect = null;
 
     public OverlayView(Context context) {
         super(context);
+        initPaints();
     }
 
     public OverlayView(Context context, AttributeSet attrs) {
         super(context, attrs);
+        initPaints();
+    }
+
+    private void initPaints() {
+        rectPaint.setColor(Color.RED);
+        rectPaint.setStyle(Paint.Style.STROKE);
+        rectPaint.setStrokeWidth(3);
+        selectedPaint.setColor(Color.argb(100, 30, 144, 255)); // light blue
+        selectedPaint.setStyle(Paint.Style.FILL);
+        dragPaint.setColor(Color.argb(70, 0, 0, 0));
+        dragPaint.setStyle(Paint.Style.FILL);
     }
 
-    public void setData(Bitmap bitmap, List<Text.TextBlock> blocks) {
+    public void setData(Bitmap bitmap, ImageOrientation orientation, OcrResult result) {
         this.imageBitmap = bitmap;
-        this.textBlocks = blocks;
+        this.orientation = orientation;
+        this.ocrResult = result;
+        selectedItems.clear();
+        if (result != null) {
+            imageWidth = result.imageWidth;
+            imageHeight = result.imageHeight;
+            prepareIndex();
+        } else if (bitmap != null) {
+            imageWidth = orientation.uprightWidth(bitmap.getWidth(), bitmap.getHeight());
+            imageHeight = orientation.uprightHeight(bitmap.getWidth(), bitmap.getHeight());
+        }
+        invalidate();
+    }
+
+    // Switching granularity drops the selection, since blocks and words don't mix
+    public void setGranularity(OcrResult.Granularity granularity) {
+        this.granularity = granularity;
+        selectedItems.clear();
+        if (ocrResult != null) {
+            prepareIndex();
+        }
         invalidate();
     }
 
-    public List<Text.TextBlock> getSelectedBlocks() {
-        return selectedBlocks;
+    public OcrResult.Granularity getGranularity() {
+        return granularity;
+    }
+
+    // Builds the grid for the current granularity before the first touch needs it
+    private void prepareIndex() {
+        int size = ocrResult.index(granularity).size();
+        if (queryResults.length < size) {
+            queryResults = new int[size];
+        }
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public List<OcrResult.Item> getSelectedItems() {
+        return selectedItems;
+    }
+
+    public void setSelectedItems(List<? extends OcrResult.Item> items) {
+        selectedItems.clear();
+        selectedItems.addAll(items);
+        invalidate();
     }
 
     public void clearSelections() {
-        selectedBlocks.clear();
+        selectedItems.clear();
         invalidate();
     }
 
+    /**
+     * Item at the current granularity under a point in view coordinates, or null. The
+     * point is mapped into image coordinates once instead of scaling every box.
+     */
+    public OcrResult.Item hitTest(float viewX, float viewY) {
+        if (ocrResult == null || getWidth() == 0 || getHeight() == 0) {
+            return null;
+        }
+        float scaleX = getWidth() / (float) imageWidth;
+        float scaleY = getHeight() / (float) imageHeight;
+        float radius = TOUCH_RADIUS_DP * getResources().getDisplayMetrics().density / Math.min(scaleX, scaleY);
+        int index = ocrResult.index(granularity).nearest(viewX / scaleX, viewY / scaleY, radius);
+        return index >= 0 ? ocrResult.items(granularity).get(index) : null;
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        if (textBlocks == null || imageBitmap == null) return false;
+        if (ocrResult == null || imageBitmap == null) return false;
 
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
                 downX = event.getX();
                 downY = event.getY();
                 isDragging = true;
+                selectionRect.setEmpty();
                 return true;
 
             case MotionEvent.ACTION_MOVE:
-                upX = event.getX();
-                upY = event.getY();
+                updateSelectionRect(event.getX(), event.getY());
                 invalidate();
                 return true;
 
             case MotionEvent.ACTION_UP:
                 isDragging = false;
-                upX = event.getX();
-                upY = event.getY();
-                selectBlocksInRect();
-                selectionRect = null;
+                updateSelectionRect(event.getX(), event.getY());
+                selectItemsInRect();
                 invalidate();
                 return true;
         }
         return super.onTouchEvent(event);
     }
 
-    private void selectBlocksInRect() {
-        selectedBlocks.clear();
-
-        float scaleX = getWidth() / (float) imageBitmap.getWidth();
-        float scaleY = getHeight() / (float) imageBitmap.getHeight();
-
-        float left = Math.min(downX, upX);
-        float top = Math.min(downY, upY);
-        float right = Math.max(downX, upX);
-        float bottom = Math.max(downY, upY);
-
-        RectF dragRect = new RectF(left, top, right, bottom);
-        this.selectionRect = dragRect;
-
-        for (Text.TextBlock block : textBlocks) {
-            Rect rect = block.getBoundingBox();
-            if (rect != null) {
-                RectF scaled = new RectF(
-                        rect.left * scaleX,
-                        rect.top * scaleY,
-                        rect.right * scaleX,
-                        rect.bottom * scaleY
-                );
-                if (RectF.intersects(scaled, dragRect)) {
-                    selectedBlocks.add(block);
-                }
-            }
+    private void updateSelectionRect(float x, float y) {
+        selectionRect.set(Math.min(downX, x), Math.min(downY, y), Math.max(downX, x), Math.max(downY, y));
+    }
+
+    private void selectItemsInRect() {
+        selectedItems.clear();
+
+        float scaleX = getWidth() / (float) imageWidth;
+        float scaleY = getHeight() / (float) imageHeight;
+        int found = ocrResult.index(granularity).query(
+                selectionRect.left / scaleX, selectionRect.top / scaleY,
+                selectionRect.right / scaleX, selectionRect.bottom / scaleY, queryResults);
+        List<OcrResult.Item> items = ocrResult.items(granularity);
+        for (int i = 0; i < found; i++) {
+            selectedItems.add(items.get(queryResults[i]));
         }
     }
 
@@ -108,48 +183,36 @@ public class OverlayView extends View {
         super.onDraw(canvas);
 
         if (imageBitmap != null) {
-            Rect dest = new Rect(0, 0, getWidth(), getHeight());
-            canvas.drawBitmap(imageBitmap, null, dest, null);
+            int bitmapWidth = orientation.uprightWidth(imageBitmap.getWidth(), imageBitmap.getHeight());
+            int bitmapHeight = orientation.uprightHeight(imageBitmap.getWidth(), imageBitmap.getHeight());
+            orientation.toUpright(drawMatrix, imageBitmap.getWidth(), imageBitmap.getHeight());
+            drawMatrix.postScale(getWidth() / (float) bitmapWidth, getHeight() / (float) bitmapHeight);
+            canvas.drawBitmap(imageBitmap, drawMatrix, bitmapPaint);
         }
 
-        if (textBlocks != null) {
-            Paint rectPaint = new Paint();
-            rectPaint.setColor(Color.RED);
-            rectPaint.setStyle(Paint.Style.STROKE);
-            rectPaint.setStrokeWidth(3);
-
-            Paint selectedPaint = new Paint();
-            selectedPaint.setColor(Color.argb(100, 30, 144, 255)); // light blue
-            selectedPaint.setStyle(Paint.Style.FILL);
-
-            float scaleX = getWidth() / (float) imageBitmap.getWidth();
-            float scaleY = getHeight() / (float) imageBitmap.getHeight();
-
-            for (Text.TextBlock block : textBlocks) {
-                Rect rect = block.getBoundingBox();
-                if (rect != null) {
-                    RectF scaledRect = new RectF(
-                            rect.left * scaleX,
-                            rect.top * scaleY,
-                            rect.right * scaleX,
-                            rect.bottom * scaleY
-                    );
-
-                    if (selectedBlocks.contains(block)) {
-                        canvas.drawRect(scaledRect, selectedPaint);
-                    }
-
-                    canvas.drawRect(scaledRect, rectPaint);
-                }
+        if (ocrResult != null) {
+            float scaleX = getWidth() / (float) imageWidth;
+            float scaleY = getHeight() / (float) imageHeight;
+
+            // Indexed loops: an iterator per frame is garbage during drags
+            for (int i = 0; i < selectedItems.size(); i++) {
+                scaleInto(selectedItems.get(i).box, scaleX, scaleY);
+                canvas.drawRect(scratchRect, selectedPaint);
+            }
+            List<OcrResult.Item> items = ocrResult.items(granularity);
+            for (int i = 0; i < items.size(); i++) {
+                scaleInto(items.get(i).box, scaleX, scaleY);
+                canvas.drawRect(scratchRect, rectPaint);
             }
         }
 
         // Draw selection rectangle while dragging
-        if (isDragging && imageBitmap != null && selectionRect != null) {
-            Paint dragPaint = new Paint();
-            dragPaint.setColor(Color.argb(70, 0, 0, 0));
-            dragPaint.setStyle(Paint.Style.FILL);
+        if (isDragging && imageBitmap != null && !selectionRect.isEmpty()) {
             canvas.drawRect(selectionRect, dragPaint);
         }
     }
+
+    private void scaleInto(Rect box, float scaleX, float scaleY) {
+        scratchRect.set(box.left * scaleX, box.top * scaleY, box.right * scaleX, box.bottom * scaleY);
+    }
 }
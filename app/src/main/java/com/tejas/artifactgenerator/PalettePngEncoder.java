@@ -0,0 +1,75 @@
+package com.tejas.artifactgenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an 8-bit indexed-colour PNG from {@link PaletteQuantizer} output.
+ * Bitmap.compress cannot produce palette PNGs, and its 32-bit RGBA output is several
+ * times larger for the same screen. Rows use filter type 0, the recommended choice
+ * for indexed images, so the encode is a single deflate pass.
+ */
+public final class PalettePngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int COLOR_TYPE_INDEXED = 3;
+
+    private PalettePngEncoder() {
+    }
+
+    public static byte[] encode(PaletteQuantizer.Result image, int width, int height) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream(image.indices.length / 4);
+        png.write(SIGNATURE);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeInt(width);
+        headerData.writeInt(height);
+        headerData.writeByte(8);
+        headerData.writeByte(COLOR_TYPE_INDEXED);
+        headerData.writeByte(0); // deflate
+        headerData.writeByte(0); // adaptive filtering
+        headerData.writeByte(0); // no interlace
+        writeChunk(png, "IHDR", header.toByteArray());
+
+        byte[] palette = new byte[image.palette.length * 3];
+        for (int i = 0; i < image.palette.length; i++) {
+            palette[i * 3] = (byte) (image.palette[i] >> 16);
+            palette[i * 3 + 1] = (byte) (image.palette[i] >> 8);
+            palette[i * 3 + 2] = (byte) image.palette[i];
+        }
+        writeChunk(png, "PLTE", palette);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(image.indices.length / 8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater, 64 * 1024)) {
+            for (int y = 0; y < height; y++) {
+                out.write(0); // filter type: none
+                out.write(image.indices, y * width, width);
+            }
+        } finally {
+            deflater.end();
+        }
+        writeChunk(png, "IDAT", compressed.toByteArray());
+        writeChunk(png, "IEND", new byte[0]);
+        return png.toByteArray();
+    }
+
+    private static void writeChunk(ByteArrayOutputStream png, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+
+        DataOutputStream out = new DataOutputStream(png);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+}
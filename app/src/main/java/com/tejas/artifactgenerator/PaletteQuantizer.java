@@ -0,0 +1,137 @@
+package com.tejas.artifactgenerator;
+
+import java.util.Arrays;
+
+/**
+ * Popularity quantizer for UI captures: the 256 most common 15-bit colours become the
+ * palette (each entry the mean of the pixels in its bin) and every other bin maps to
+ * its nearest entry. Two linear passes plus a nearest-entry search per distinct
+ * rare bin, which is plenty fast for flat screens where few bins are in use.
+ */
+public final class PaletteQuantizer {
+
+    public static final int MAX_COLORS = 256;
+    static final int BIN_COUNT = 1 << 15;
+
+    public static class Result {
+        public final byte[] indices;
+        public final int[] palette;
+
+        Result(byte[] indices, int[] palette) {
+            this.indices = indices;
+            this.palette = palette;
+        }
+    }
+
+    private PaletteQuantizer() {
+    }
+
+    static int binOf(int pixel) {
+        return ((pixel >> 9) & 0x7c00) | ((pixel >> 6) & 0x03e0) | ((pixel >> 3) & 0x001f);
+    }
+
+    public static Result quantize(int[] argb) {
+        int[] counts = new int[BIN_COUNT];
+        long[] sums = new long[BIN_COUNT * 3];
+        for (int pixel : argb) {
+            int bin = binOf(pixel);
+            counts[bin]++;
+            sums[bin * 3] += (pixel >> 16) & 0xff;
+            sums[bin * 3 + 1] += (pixel >> 8) & 0xff;
+            sums[bin * 3 + 2] += pixel & 0xff;
+        }
+
+        int[] paletteBins = mostCommonBins(counts, MAX_COLORS);
+        int[] palette = new int[paletteBins.length];
+        // Bin -> palette index, -1 until resolved
+        int[] lookup = new int[BIN_COUNT];
+        Arrays.fill(lookup, -1);
+        for (int i = 0; i < paletteBins.length; i++) {
+            int bin = paletteBins[i];
+            int count = counts[bin];
+            palette[i] = (int) (sums[bin * 3] / count) << 16
+                    | (int) (sums[bin * 3 + 1] / count) << 8
+                    | (int) (sums[bin * 3 + 2] / count);
+            lookup[bin] = i;
+        }
+
+        byte[] indices = new byte[argb.length];
+        for (int i = 0; i < argb.length; i++) {
+            int bin = binOf(argb[i]);
+            int index = lookup[bin];
+            if (index < 0) {
+                index = nearest(palette, argb[i]);
+                lookup[bin] = index;
+            }
+            indices[i] = (byte) index;
+        }
+        return new Result(indices, palette);
+    }
+
+    static int[] mostCommonBins(int[] counts, int n) {
+        int used = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                used++;
+            }
+        }
+        int size = Math.min(n, used);
+        // Threshold below which bins are left out, then fill in order of decreasing count
+        int threshold = countThreshold(counts, size);
+        int[] bins = new int[size];
+        int filled = 0;
+        for (int bin = 0; bin < BIN_COUNT && filled < size; bin++) {
+            if (counts[bin] > threshold) {
+                bins[filled++] = bin;
+            }
+        }
+        for (int bin = 0; bin < BIN_COUNT && filled < size; bin++) {
+            if (counts[bin] == threshold && threshold > 0) {
+                bins[filled++] = bin;
+            }
+        }
+        return bins;
+    }
+
+    // Smallest count still inside the top n bins
+    private static int countThreshold(int[] counts, int n) {
+        int max = 0;
+        for (int count : counts) {
+            max = Math.max(max, count);
+        }
+        int[] binsWithCount = new int[max + 1];
+        for (int count : counts) {
+            if (count > 0) {
+                binsWithCount[count]++;
+            }
+        }
+        int remaining = n;
+        for (int count = max; count > 0; count--) {
+            remaining -= binsWithCount[count];
+            if (remaining <= 0) {
+                return count;
+            }
+        }
+        return 0;
+    }
+
+    private static int nearest(int[] palette, int pixel) {
+        int r = (pixel >> 16) & 0xff;
+        int g = (pixel >> 8) & 0xff;
+        int b = pixel & 0xff;
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < palette.length; i++) {
+            int dr = ((palette[i] >> 16) & 0xff) - r;
+            int dg = ((palette[i] >> 8) & 0xff) - g;
+            int db = (palette[i] & 0xff) - b;
+            // Weighted towards green, roughly how the eye ranks channel differences
+            int distance = 2 * dr * dr + 4 * dg * dg + 3 * db * db;
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+}
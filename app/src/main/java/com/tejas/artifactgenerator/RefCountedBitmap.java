@@ -0,0 +1,46 @@
+package com.tejas.artifactgenerator;
+
+import android.graphics.Bitmap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared ownership of a pooled {@link Bitmap}. The creator holds the first reference;
+ * anyone who keeps the bitmap beyond the creator's scope calls {@link #retain()} and
+ * later {@link #release()}. When the count reaches zero the bitmap goes back to its
+ * {@link BitmapPool}, so nobody may touch it after releasing their reference.
+ */
+public class RefCountedBitmap {
+
+    private final Bitmap bitmap;
+    private final BitmapPool pool;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    RefCountedBitmap(Bitmap bitmap, BitmapPool pool) {
+        this.bitmap = bitmap;
+        this.pool = pool;
+    }
+
+    public Bitmap get() {
+        if (references.get() <= 0) {
+            throw new IllegalStateException("Bitmap already released");
+        }
+        return bitmap;
+    }
+
+    public RefCountedBitmap retain() {
+        if (references.getAndIncrement() <= 0) {
+            throw new IllegalStateException("Bitmap already released");
+        }
+        return this;
+    }
+
+    public void release() {
+        int remaining = references.decrementAndGet();
+        if (remaining == 0) {
+            pool.put(bitmap);
+        } else if (remaining < 0) {
+            throw new IllegalStateException("Bitmap released too many times");
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.tejas.artifactgenerator;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the in-progress test case (fields, step layout, captured image paths and the
+ * capture the camera app is working on) in {@link ArtifactDatabase}, so it survives the
+ * process being killed while the camera is in front. Every change is written as it
+ * happens on a background thread; {@link #restore()} reads the last unfinished session
+ * back with a handful of indexed queries and no directory scan.
+ */
+public class SessionStore {
+
+    private static final String TAG = "SessionStore";
+    // Each write is a single small row, so this is only reached if storage is stuck
+    private static final long SHUTDOWN_WAIT_MS = 1000;
+
+    /** Everything needed to rebuild the main screen. */
+    public static class Snapshot {
+        public final String sessionId;
+        public final boolean restored;
+        public String testCaseId = "";
+        public String testCaseTitle = "";
+        public String preconditions = "";
+        public int stepCount;
+        public int selectedStep = -1;
+        public String pendingCapturePath;
+        public int pendingRequestCode;
+        public String lastOcrPath;
+        public int lastOcrRequestCode;
+        public final Map<Integer, List<String>> stepImages = new HashMap<>();
+        public final Map<Integer, Boolean> stepToggles = new HashMap<>();
+
+        Snapshot(String sessionId, boolean restored) {
+            this.sessionId = sessionId;
+            this.restored = restored;
+        }
+    }
+
+    private final ArtifactDatabase database;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "session-store"));
+    private String sessionId;
+
+    public SessionStore(ArtifactDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Resumes the most recent unfinished session, or starts a new one. Runs on the
+     * calling thread because the screen cannot be built without it; images whose file
+     * has since disappeared are left out.
+     */
+    public Snapshot restore() {
+        SQLiteDatabase db = database.getReadableDatabase();
+        Snapshot snapshot;
+        try (Cursor cursor = db.query(ArtifactDatabase.TABLE_SESSIONS, new String[]{
+                        ArtifactDatabase.COLUMN_SESSION_ID,
+                        ArtifactDatabase.COLUMN_TEST_CASE_ID,
+                        ArtifactDatabase.COLUMN_TEST_CASE_TITLE,
+                        ArtifactDatabase.COLUMN_PRECONDITIONS,
+                        ArtifactDatabase.COLUMN_STEP_COUNT,
+                        ArtifactDatabase.COLUMN_SELECTED_STEP,
+                        ArtifactDatabase.COLUMN_PENDING_CAPTURE_PATH,
+                        ArtifactDatabase.COLUMN_PENDING_REQUEST_CODE,
+                        ArtifactDatabase.COLUMN_LAST_OCR_PATH,
+                        ArtifactDatabase.COLUMN_LAST_OCR_REQUEST_CODE},
+                ArtifactDatabase.COLUMN_FINISHED + " = 0", null, null, null,
+                ArtifactDatabase.COLUMN_UPDATED_AT + " DESC", "1")) {
+            if (!cursor.moveToFirst()) {
+                return start();
+            }
+            snapshot = new Snapshot(cursor.getString(0), true);
+            snapshot.testCaseId = valueOrEmpty(cursor.getString(1));
+            snapshot.testCaseTitle = valueOrEmpty(cursor.getString(2));
+            snapshot.preconditions = valueOrEmpty(cursor.getString(3));
+            snapshot.stepCount = cursor.getInt(4);
+            snapshot.selectedStep = cursor.getInt(5);
+            snapshot.pendingCapturePath = cursor.getString(6);
+            snapshot.pendingRequestCode = cursor.getInt(7);
+            String lastOcrPath = cursor.getString(8);
+            if (lastOcrPath != null && new File(lastOcrPath).exists()) {
+                snapshot.lastOcrPath = lastOcrPath;
+                snapshot.lastOcrRequestCode = cursor.getInt(9);
+            }
+        }
+        String[] session = {snapshot.sessionId};
+
+        try (Cursor cursor = db.query(ArtifactDatabase.TABLE_SESSION_STEPS,
+                new String[]{ArtifactDatabase.COLUMN_STEP, ArtifactDatabase.COLUMN_WANTS_TWO_IMAGES},
+                ArtifactDatabase.COLUMN_SESSION_ID + " = ?", session, null, null, null)) {
+            while (cursor.moveToNext()) {
+                snapshot.stepToggles.put(cursor.getInt(0), cursor.getInt(1) != 0);
+            }
+        }
+
+        int missing = 0;
+        try (Cursor cursor = db.query(ArtifactDatabase.TABLE_SESSION_IMAGES,
+                new String[]{ArtifactDatabase.COLUMN_STEP, ArtifactDatabase.COLUMN_PATH},
+                ArtifactDatabase.COLUMN_SESSION_ID + " = ?", session, null, null,
+                ArtifactDatabase.COLUMN_STEP + ", " + ArtifactDatabase.COLUMN_POSITION)) {
+            while (cursor.moveToNext()) {
+                String path = cursor.getString(1);
+                if (new File(path).exists()) {
+                    snapshot.stepImages.computeIfAbsent(cursor.getInt(0), k -> new ArrayList<>()).add(path);
+                } else {
+                    missing++;
+                }
+            }
+        }
+        if (missing > 0) {
+            Log.w(TAG, "Dropped " + missing + " session images whose file is gone");
+            renumberImages(snapshot);
+        }
+        sessionId = snapshot.sessionId;
+        return snapshot;
+    }
+
+    /**
+     * Rewrites the session's image rows as positions 0..n-1 per step, matching the lists
+     * handed to the activity. New captures are stored at their list index, which would
+     * otherwise collide with, and replace, a row numbered past a dropped image.
+     */
+    private void renumberImages(Snapshot snapshot) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(ArtifactDatabase.TABLE_SESSION_IMAGES, ArtifactDatabase.COLUMN_SESSION_ID + " = ?",
+                    new String[]{snapshot.sessionId});
+            for (Map.Entry<Integer, List<String>> entry : snapshot.stepImages.entrySet()) {
+                List<String> paths = entry.getValue();
+                for (int position = 0; position < paths.size(); position++) {
+                    ContentValues image = new ContentValues();
+                    image.put(ArtifactDatabase.COLUMN_SESSION_ID, snapshot.sessionId);
+                    image.put(ArtifactDatabase.COLUMN_STEP, entry.getKey());
+                    image.put(ArtifactDatabase.COLUMN_POSITION, position);
+                    image.put(ArtifactDatabase.COLUMN_PATH, paths.get(position));
+                    db.insert(ArtifactDatabase.TABLE_SESSION_IMAGES, null, image);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public void setTestCase(String testCaseId, String title) {
+        ContentValues values = new ContentValues();
+        values.put(ArtifactDatabase.COLUMN_TEST_CASE_ID, testCaseId);
+        values.put(ArtifactDatabase.COLUMN_TEST_CASE_TITLE, title);
+        updateSession(values);
+    }
+
+    public void setPreconditions(String preconditions) {
+        ContentValues values = new ContentValues();
+        values.put(ArtifactDatabase.COLUMN_PRECONDITIONS, preconditions);
+        updateSession(values);
+    }
+
+    public void setStepCount(int stepCount) {
+        ContentValues values = new ContentValues();
+        values.put(ArtifactDatabase.COLUMN_STEP_COUNT, stepCount);
+        values.put(ArtifactDatabase.COLUMN_SELECTED_STEP, -1);
+        updateSession(values);
+    }
+
+    public void setSelectedStep(int step) {
+        ContentValues values = new ContentValues();
+        values.put(ArtifactDatabase.COLUMN_SELECTED_STEP, step);
+        updateSession(values);
+    }
+
+    public void setStepToggle(int step, boolean wantsTwoImages) {
+        String session = sessionId;
+        executor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put(ArtifactDatabase.COLUMN_SESSION_ID, session);
+            values.put(ArtifactDatabase.COLUMN_STEP, step);
+            values.put(ArtifactDatabase.COLUMN_WANTS_TWO_IMAGES, wantsTwoImages ? 1 : 0);
+            database.getWritableDatabase().insertWithOnConflict(ArtifactDatabase.TABLE_SESSION_STEPS,
+                    null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        });
+        updateSession(new ContentValues());
+    }
+
+    // The file the camera app is writing to, so the result can be matched up after a restart
+    public void setPendingCapture(File file, int requestCode) {
+        ContentValues values = new ContentValues();
+        values.put(ArtifactDatabase.COLUMN_PENDING_CAPTURE_PATH, file.getAbsolutePath());
+        values.put(ArtifactDatabase.COLUMN_PENDING_REQUEST_CODE, requestCode);
+        updateSession(values);
+    }
+
+    public void clearPendingCapture() {
+        ContentValues values = new ContentValues();
+        values.putNull(ArtifactDatabase.COLUMN_PENDING_CAPTURE_PATH);
+        values.put(ArtifactDatabase.COLUMN_PENDING_REQUEST_CODE, 0);
+        updateSession(values);
+    }
+
+    // The OCR capture whose overlay "Re-open Last Capture" brings back
+    public void setLastOcrCapture(File file, int requestCode) {
+        ContentValues values = new ContentValues();
+        values.put(ArtifactDatabase.COLUMN_LAST_OCR_PATH, file.getAbsolutePath());
+        values.put(ArtifactDatabase.COLUMN_LAST_OCR_REQUEST_CODE, requestCode);
+        updateSession(values);
+    }
+
+    // Appends a capture to a step and clears the pending capture in one transaction
+    public void addStepImage(int step, int position, String path) {
+        String session = sessionId;
+        long now = System.currentTimeMillis();
+        executor.execute(() -> {
+            SQLiteDatabase db = database.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                ContentValues image = new ContentValues();
+                image.put(ArtifactDatabase.COLUMN_SESSION_ID, session);
+                image.put(ArtifactDatabase.COLUMN_STEP, step);
+                image.put(ArtifactDatabase.COLUMN_POSITION, position);
+                image.put(ArtifactDatabase.COLUMN_PATH, path);
+                db.insertWithOnConflict(ArtifactDatabase.TABLE_SESSION_IMAGES, null, image,
+                        SQLiteDatabase.CONFLICT_REPLACE);
+
+                ContentValues values = new ContentValues();
+                values.putNull(ArtifactDatabase.COLUMN_PENDING_CAPTURE_PATH);
+                values.put(ArtifactDatabase.COLUMN_PENDING_REQUEST_CODE, 0);
+                values.put(ArtifactDatabase.COLUMN_FINISHED, 0);
+                values.put(ArtifactDatabase.COLUMN_UPDATED_AT, now);
+                db.update(ArtifactDatabase.TABLE_SESSIONS, values,
+                        ArtifactDatabase.COLUMN_SESSION_ID + " = ?", new String[]{session});
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    /**
+     * Called once a document has been generated: the next launch starts clean. Any
+     * further change in this run reopens the session.
+     */
+    public void markFinished() {
+        String session = sessionId;
+        executor.execute(() -> {
+            ContentValues values = new ContentValues();
+            values.put(ArtifactDatabase.COLUMN_FINISHED, 1);
+            database.getWritableDatabase().update(ArtifactDatabase.TABLE_SESSIONS, values,
+                    ArtifactDatabase.COLUMN_SESSION_ID + " = ?", new String[]{session});
+        });
+    }
+
+    // Drains queued writes, so an activity recreated right after this one restores them
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Session writes still pending at shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Snapshot start() {
+        Snapshot snapshot = new Snapshot(UUID.randomUUID().toString(), false);
+        sessionId = snapshot.sessionId;
+        String session = sessionId;
+        long now = System.currentTimeMillis();
+        executor.execute(() -> {
+            SQLiteDatabase db = database.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                // Only the newest session is ever resumed, so finished ones are dead weight
+                String[] current = {session};
+                String finishedSessions = "SELECT " + ArtifactDatabase.COLUMN_SESSION_ID + " FROM "
+                        + ArtifactDatabase.TABLE_SESSIONS + " WHERE " + ArtifactDatabase.COLUMN_FINISHED
+                        + " = 1 AND " + ArtifactDatabase.COLUMN_SESSION_ID + " != ?";
+                db.delete(ArtifactDatabase.TABLE_SESSION_IMAGES,
+                        ArtifactDatabase.COLUMN_SESSION_ID + " IN (" + finishedSessions + ")", current);
+                db.delete(ArtifactDatabase.TABLE_SESSION_STEPS,
+                        ArtifactDatabase.COLUMN_SESSION_ID + " IN (" + finishedSessions + ")", current);
+                db.delete(ArtifactDatabase.TABLE_SESSIONS, ArtifactDatabase.COLUMN_FINISHED + " = 1 AND "
+                        + ArtifactDatabase.COLUMN_SESSION_ID + " != ?", current);
+
+                ContentValues values = new ContentValues();
+                values.put(ArtifactDatabase.COLUMN_SESSION_ID, session);
+                values.put(ArtifactDatabase.COLUMN_UPDATED_AT, now);
+                db.insert(ArtifactDatabase.TABLE_SESSIONS, null, values);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+        return snapshot;
+    }
+
+    // Every change also reopens the session and moves it to the front
+    private void updateSession(ContentValues values) {
+        String session = sessionId;
+        values.put(ArtifactDatabase.COLUMN_FINISHED, 0);
+        values.put(ArtifactDatabase.COLUMN_UPDATED_AT, System.currentTimeMillis());
+        executor.execute(() -> database.getWritableDatabase().update(ArtifactDatabase.TABLE_SESSIONS,
+                values, ArtifactDatabase.COLUMN_SESSION_ID + " = ?", new String[]{session}));
+    }
+
+    private static String valueOrEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
@@ -0,0 +1,59 @@
+package com.tejas.artifactgenerator;
+
+import java.util.Arrays;
+
+/**
+ * Splits a document byte budget across its images. Images that already fit a fair
+ * share keep their size and hand the slack to the others (water-filling), so only
+ * the largest images get squeezed. No allowance drops below {@link #MIN_IMAGE_BYTES},
+ * so a budget too small for the image count is overshot rather than met with
+ * unreadable images; {@link #total} of the allowances shows by how much.
+ */
+public final class SizeBudget {
+
+    // document.xml, styles, relationships and zip directory for a typical case
+    public static final long DOCUMENT_OVERHEAD_BYTES = 48 * 1024;
+    public static final long PER_IMAGE_OVERHEAD_BYTES = 1024;
+    // Roughly a legible low-quality step screenshot; also keeps every allowance positive
+    public static final long MIN_IMAGE_BYTES = 8 * 1024;
+
+    private SizeBudget() {
+    }
+
+    public static long imageBytesAvailable(long maxDocumentBytes, int imageCount) {
+        return maxDocumentBytes - DOCUMENT_OVERHEAD_BYTES - PER_IMAGE_OVERHEAD_BYTES * imageCount;
+    }
+
+    /**
+     * Returns the byte allowance for each image, always at least 1. An allowance equal
+     * to the image's current size means it can be kept as is.
+     */
+    public static long[] allocate(long[] currentSizes, long availableBytes) {
+        int count = currentSizes.length;
+        long[] allowances = new long[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(currentSizes[a], currentSizes[b]));
+
+        long remaining = Math.max(0, availableBytes);
+        for (int i = 0; i < count; i++) {
+            int index = order[i];
+            long fairShare = remaining / (count - i);
+            long floor = Math.max(1, Math.min(currentSizes[index], MIN_IMAGE_BYTES));
+            long allowance = Math.max(floor, Math.min(currentSizes[index], fairShare));
+            allowances[index] = allowance;
+            remaining = Math.max(0, remaining - allowance);
+        }
+        return allowances;
+    }
+
+    public static long total(long[] sizes) {
+        long total = 0;
+        for (long size : sizes) {
+            total += size;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,164 @@
+package com.tejas.artifactgenerator;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over boxes in image coordinates, so taps and drags only look at the
+ * boxes near them instead of every block, line or word on the screen. Built once per
+ * OCR result; each box is listed in every cell it overlaps, stored as flat arrays.
+ * Queries return box indices and allocate nothing, which keeps touch handling free of
+ * garbage. Not thread-safe: queries share scratch state and belong on the UI thread.
+ */
+public final class SpatialIndex {
+
+    private final int[] boxes;
+    private final int count;
+    private final int cellSize;
+    private final int columns;
+    private final int rows;
+    // Boxes of cell c are cellItems[cellStart[c]] .. cellItems[cellStart[c + 1] - 1]
+    private final int[] cellStart;
+    private final int[] cellItems;
+    // A box spanning several cells is reported once per query: visited[i] == queryStamp
+    private final int[] visited;
+    private int queryStamp;
+
+    /**
+     * @param boxes {left, top, right, bottom} per box, packed four ints at a time; the
+     *              index of a box in this array is what queries return
+     */
+    public SpatialIndex(int width, int height, int[] boxes) {
+        this.boxes = boxes;
+        this.count = boxes.length / 4;
+        this.cellSize = cellSizeFor(width, height, boxes, count);
+        this.columns = Math.max(1, (width + cellSize - 1) / cellSize);
+        this.rows = Math.max(1, (height + cellSize - 1) / cellSize);
+        this.visited = new int[count];
+
+        // Counting pass, then prefix sums, then fill: two walks over the boxes, no lists
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < count; i++) {
+            for (int row = row(boxes[i * 4 + 1]); row <= row(boxes[i * 4 + 3] - 1); row++) {
+                for (int column = column(boxes[i * 4]); column <= column(boxes[i * 4 + 2] - 1); column++) {
+                    cellStart[row * columns + column + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellItems = new int[cellStart[columns * rows]];
+        int[] fill = Arrays.copyOf(cellStart, columns * rows);
+        for (int i = 0; i < count; i++) {
+            for (int row = row(boxes[i * 4 + 1]); row <= row(boxes[i * 4 + 3] - 1); row++) {
+                for (int column = column(boxes[i * 4]); column <= column(boxes[i * 4 + 2] - 1); column++) {
+                    cellItems[fill[row * columns + column]++] = i;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Box under (x, y), or the closest one within radius when the point misses them all,
+     * so small word boxes stay tappable with a finger. Overlapping boxes resolve to the
+     * smallest. Returns -1 when nothing is in reach.
+     */
+    public int nearest(float x, float y, float radius) {
+        int best = -1;
+        float bestDistance = Float.MAX_VALUE;
+        long bestArea = Long.MAX_VALUE;
+        int stamp = nextStamp();
+        for (int row = row((int) (y - radius)); row <= row((int) (y + radius)); row++) {
+            for (int column = column((int) (x - radius)); column <= column((int) (x + radius)); column++) {
+                int cell = row * columns + column;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellItems[k];
+                    if (visited[i] == stamp) {
+                        continue;
+                    }
+                    visited[i] = stamp;
+                    int left = boxes[i * 4];
+                    int top = boxes[i * 4 + 1];
+                    int right = boxes[i * 4 + 2];
+                    int bottom = boxes[i * 4 + 3];
+                    float dx = Math.max(0, Math.max(left - x, x - right));
+                    float dy = Math.max(0, Math.max(top - y, y - bottom));
+                    float distance = dx * dx + dy * dy;
+                    long area = (long) (right - left) * (bottom - top);
+                    if (distance <= radius * radius
+                            && (distance < bestDistance || distance == bestDistance && area < bestArea)) {
+                        best = i;
+                        bestDistance = distance;
+                        bestArea = area;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Writes the indices of every box intersecting the rectangle into out, in ascending
+     * order (reading order, for OCR output), and returns how many there are. out needs
+     * room for {@link #size()} entries.
+     */
+    public int query(float left, float top, float right, float bottom, int[] out) {
+        int found = 0;
+        int stamp = nextStamp();
+        for (int row = row((int) top); row <= row((int) bottom); row++) {
+            for (int column = column((int) left); column <= column((int) right); column++) {
+                int cell = row * columns + column;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = cellItems[k];
+                    if (visited[i] == stamp) {
+                        continue;
+                    }
+                    visited[i] = stamp;
+                    if (boxes[i * 4] < right && left < boxes[i * 4 + 2]
+                            && boxes[i * 4 + 1] < bottom && top < boxes[i * 4 + 3]) {
+                        out[found++] = i;
+                    }
+                }
+            }
+        }
+        Arrays.sort(out, 0, found);
+        return found;
+    }
+
+    private int nextStamp() {
+        if (++queryStamp == 0) {
+            // Wrapped after four billion queries; start the marks over
+            Arrays.fill(visited, 0);
+            queryStamp = 1;
+        }
+        return queryStamp;
+    }
+
+    private int column(int x) {
+        return Math.max(0, Math.min(columns - 1, Math.floorDiv(x, cellSize)));
+    }
+
+    private int row(int y) {
+        return Math.max(0, Math.min(rows - 1, Math.floorDiv(y, cellSize)));
+    }
+
+    /**
+     * About as large as a typical box, so most boxes touch one to four cells, but never
+     * so small that the grid has far more cells than boxes on sparse screens.
+     */
+    private static int cellSizeFor(int width, int height, int[] boxes, int count) {
+        if (count == 0) {
+            return Math.max(1, Math.max(width, height));
+        }
+        long extent = 0;
+        for (int i = 0; i < count; i++) {
+            extent += Math.max(boxes[i * 4 + 2] - boxes[i * 4], boxes[i * 4 + 3] - boxes[i * 4 + 1]);
+        }
+        double sparse = Math.sqrt((double) width * height / count);
+        return Math.max(1, (int) Math.ceil(Math.max(extent / (double) count, sparse / 2)));
+    }
+}
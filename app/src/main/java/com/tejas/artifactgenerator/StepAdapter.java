@@ -0,0 +1,147 @@
+package com.tejas.artifactgenerator;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+import android.widget.ToggleButton;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Step list backed by {@code item_steps.xml}. Rows are recycled and keyed by step
+ * number, and each submitted list is diffed in the background, so capturing an image
+ * rebinds only the row it belongs to.
+ */
+public class StepAdapter extends ListAdapter<StepAdapter.StepItem, StepAdapter.ViewHolder> {
+
+    public interface Listener {
+        void onStepSelected(int step);
+
+        void onStepToggled(int step, boolean wantsTwoImages);
+    }
+
+    /** Immutable row state; a new instance is submitted whenever anything changes. */
+    public static final class StepItem {
+        final int step;
+        final List<String> imagePaths;
+        final boolean wantsTwoImages;
+        final boolean selected;
+
+        public StepItem(int step, List<String> imagePaths, boolean wantsTwoImages, boolean selected) {
+            this.step = step;
+            this.imagePaths = Collections.unmodifiableList(new ArrayList<>(imagePaths));
+            this.wantsTwoImages = wantsTwoImages;
+            this.selected = selected;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof StepItem)) {
+                return false;
+            }
+            StepItem other = (StepItem) o;
+            return step == other.step && wantsTwoImages == other.wantsTwoImages
+                    && selected == other.selected && imagePaths.equals(other.imagePaths);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(step, imagePaths, wantsTwoImages, selected);
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<StepItem> DIFF = new DiffUtil.ItemCallback<StepItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull StepItem oldItem, @NonNull StepItem newItem) {
+            return oldItem.step == newItem.step;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull StepItem oldItem, @NonNull StepItem newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    private final ThumbnailLoader thumbnailLoader;
+    private final Listener listener;
+
+    public StepAdapter(ThumbnailLoader thumbnailLoader, Listener listener) {
+        super(DIFF);
+        this.thumbnailLoader = thumbnailLoader;
+        this.listener = listener;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).step;
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_steps, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        StepItem item = getItem(position);
+        holder.stepText.setText("Step " + item.step);
+        holder.itemView.setBackgroundColor(item.selected
+                ? ContextCompat.getColor(holder.itemView.getContext(), R.color.selectedStepBackground)
+                : 0);
+        holder.itemView.setOnClickListener(v -> listener.onStepSelected(item.step));
+
+        // Detach before setChecked so binding does not report a toggle
+        holder.imageToggle.setOnCheckedChangeListener(null);
+        holder.imageToggle.setChecked(item.wantsTwoImages);
+        holder.imageToggle.setOnCheckedChangeListener(
+                (buttonView, isChecked) -> listener.onStepToggled(item.step, isChecked));
+
+        int shown = Math.min(item.imagePaths.size(), holder.thumbnails.length);
+        for (int i = 0; i < holder.thumbnails.length; i++) {
+            ImageView thumbnail = holder.thumbnails[i];
+            if (i < shown) {
+                thumbnail.setVisibility(View.VISIBLE);
+                thumbnailLoader.load(thumbnail, item.imagePaths.get(i));
+            } else {
+                thumbnail.setVisibility(View.GONE);
+                thumbnail.setTag(null);
+                thumbnail.setImageDrawable(null);
+            }
+        }
+        int more = item.imagePaths.size() - shown;
+        holder.moreText.setVisibility(more > 0 ? View.VISIBLE : View.GONE);
+        holder.moreText.setText("+" + more);
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView stepText;
+        final ImageView[] thumbnails;
+        final TextView moreText;
+        final ToggleButton imageToggle;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            stepText = itemView.findViewById(R.id.stepText);
+            thumbnails = new ImageView[]{
+                    itemView.findViewById(R.id.thumbnail1),
+                    itemView.findViewById(R.id.thumbnail2),
+                    itemView.findViewById(R.id.thumbnail3)};
+            moreText = itemView.findViewById(R.id.moreImagesText);
+            imageToggle = itemView.findViewById(R.id.imageToggle);
+        }
+    }
+}
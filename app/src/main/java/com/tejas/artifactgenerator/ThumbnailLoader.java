@@ -0,0 +1,117 @@
+package com.tejas.artifactgenerator;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Square, upright, center-cropped thumbnails for the step list, decoded at row size
+ * off the main thread and kept in a memory-bounded LRU. A recycled ImageView is
+ * tagged with the path it currently shows, so a late decode never lands on the wrong
+ * row. Everything except the decode itself runs on the main thread.
+ */
+public class ThumbnailLoader {
+
+    private static final String TAG = "ThumbnailLoader";
+    private static final int DECODE_THREADS = 2;
+
+    private final int sizePx;
+    private final LruCache<String, Bitmap> cache;
+    private final Map<String, List<ImageView>> pending = new HashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newFixedThreadPool(DECODE_THREADS,
+            runnable -> new Thread(runnable, "thumbnail-loader"));
+
+    public ThumbnailLoader(int sizePx, int maxBytes) {
+        this.sizePx = sizePx;
+        this.cache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    public void load(ImageView view, String path) {
+        view.setTag(path);
+        Bitmap cached = cache.get(path);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+        view.setImageDrawable(null);
+
+        List<ImageView> waiting = pending.get(path);
+        if (waiting != null) {
+            waiting.add(view);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(view);
+        pending.put(path, waiting);
+        executor.execute(() -> {
+            Bitmap thumbnail = decode(path);
+            mainHandler.post(() -> deliver(path, thumbnail));
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        cache.evictAll();
+    }
+
+    private void deliver(String path, Bitmap thumbnail) {
+        List<ImageView> waiting = pending.remove(path);
+        if (thumbnail == null || waiting == null) {
+            return;
+        }
+        cache.put(path, thumbnail);
+        for (ImageView view : waiting) {
+            if (path.equals(view.getTag())) {
+                view.setImageBitmap(thumbnail);
+            }
+        }
+    }
+
+    private Bitmap decode(String path) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int shortSide = Math.min(options.outWidth, options.outHeight);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = ImageSizing.computeSampleSize(shortSide, sizePx);
+        Bitmap decoded = BitmapFactory.decodeFile(path, options);
+        if (decoded == null) {
+            Log.w(TAG, "Could not decode " + path);
+            return null;
+        }
+
+        // Center square of the stored pixels, turned upright and scaled to row size in one pass
+        int side = Math.min(decoded.getWidth(), decoded.getHeight());
+        int left = (decoded.getWidth() - side) / 2;
+        int top = (decoded.getHeight() - side) / 2;
+        Matrix matrix = ImageOrientation.fromFile(path).toUpright(new Matrix(), side, side);
+        float scale = Math.min(1f, sizePx / (float) side);
+        matrix.postScale(scale, scale);
+        Bitmap thumbnail = Bitmap.createBitmap(decoded, left, top, side, side, matrix, true);
+        if (thumbnail != decoded) {
+            decoded.recycle();
+        }
+        return thumbnail;
+    }
+}
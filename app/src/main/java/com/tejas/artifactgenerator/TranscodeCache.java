@@ -0,0 +1,214 @@
+package com.tejas.artifactgenerator;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Disk cache of processed step images. Entries are keyed by a hash of the source
+ * file's bytes plus the transcode parameters, so a regenerated document only pays
+ * for work on images that actually changed. Least recently used entries are evicted
+ * once the directory grows past the size cap. Entries double as the staged picture
+ * parts that are streamed into the document, so payloads never sit on the heap; an
+ * entry handed out by {@link #get} or {@link #put} is pinned, and eviction skips it
+ * until every pin is returned through {@link #unpin}.
+ */
+public class TranscodeCache {
+
+    private static final String TAG = "TranscodeCache";
+    private static final String JPEG_SUFFIX = ".jpg";
+    private static final String PNG_SUFFIX = ".png";
+
+    private final File cacheDir;
+    private final long maxBytes;
+    // Source hashes for files already seen in this process, invalidated by size/mtime
+    private final Map<String, SourceHash> sourceHashes = new HashMap<>();
+    // Pin count per entry file name; pinned entries are still to be streamed into a document
+    private final Map<String, Integer> pins = new HashMap<>();
+    private long currentBytes = -1;
+
+    private static class SourceHash {
+        final long length;
+        final long lastModified;
+        final String hash;
+
+        SourceHash(long length, long lastModified, String hash) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+    public TranscodeCache(File cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Log.w(TAG, "Could not create cache dir " + cacheDir);
+        }
+    }
+
+    // encoding describes the compression settings, e.g. "q40" or "b250000" for a byte budget
+    public String keyFor(String sourcePath, int targetWidth, String encoding, boolean wantsTwoImgs) throws IOException {
+        String sourceHash = hashSource(new File(sourcePath));
+        return sourceHash + "_w" + targetWidth + "_" + encoding + (wantsTwoImgs ? "_wide" : "_single");
+    }
+
+    // Returns the cached payload file pinned, or null on a miss
+    public synchronized File get(String key) {
+        File entry = entryFile(key, DocxWriter.PictureType.JPEG);
+        if (!entry.exists()) {
+            entry = entryFile(key, DocxWriter.PictureType.PNG);
+        }
+        if (!entry.exists()) {
+            return null;
+        }
+        entry.setLastModified(System.currentTimeMillis());
+        pin(entry);
+        return entry;
+    }
+
+    // Stores the payload and returns its file pinned, or null if it could not be written
+    public synchronized File put(String key, byte[] data, DocxWriter.PictureType type) {
+        File entry = entryFile(key, type);
+        File temp = new File(cacheDir, key + ".tmp");
+        ensureSizeKnown();
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(data);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write cache entry", e);
+            temp.delete();
+            return null;
+        }
+        if (entry.exists()) {
+            currentBytes -= entry.length();
+        }
+        if (!temp.renameTo(entry)) {
+            temp.delete();
+            return null;
+        }
+        currentBytes += data.length;
+        pin(entry);
+        trimToSize();
+        return entry;
+    }
+
+    // Takes one more pin on an entry; files outside the cache (passed-through sources) are ignored
+    public synchronized void pin(File entry) {
+        if (cacheDir.equals(entry.getParentFile())) {
+            pins.merge(entry.getName(), 1, Integer::sum);
+        }
+    }
+
+    public synchronized void unpin(File entry) {
+        if (cacheDir.equals(entry.getParentFile())) {
+            pins.computeIfPresent(entry.getName(), (name, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    public synchronized void clear() {
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        currentBytes = 0;
+    }
+
+    private File entryFile(String key, DocxWriter.PictureType type) {
+        return new File(cacheDir, key + (type == DocxWriter.PictureType.PNG ? PNG_SUFFIX : JPEG_SUFFIX));
+    }
+
+    private void removeEntry(File entry) {
+        long length = entry.length();
+        if (entry.delete() && currentBytes >= 0) {
+            currentBytes -= length;
+        }
+    }
+
+    private void ensureSizeKnown() {
+        if (currentBytes >= 0) {
+            return;
+        }
+        currentBytes = 0;
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                currentBytes += file.length();
+            }
+        }
+    }
+
+    private void trimToSize() {
+        if (currentBytes <= maxBytes) {
+            return;
+        }
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(JPEG_SUFFIX) || name.endsWith(PNG_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        // Oldest access first; get() refreshes lastModified on every hit
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (currentBytes <= maxBytes) {
+                break;
+            }
+            if (!pins.containsKey(file.getName())) {
+                removeEntry(file);
+            }
+        }
+        Log.d(TAG, "Cache trimmed to " + currentBytes + " bytes");
+    }
+
+    private String hashSource(File source) throws IOException {
+        String path = source.getAbsolutePath();
+        long length = source.length();
+        long lastModified = source.lastModified();
+        synchronized (sourceHashes) {
+            SourceHash known = sourceHashes.get(path);
+            if (known != null && known.length == length && known.lastModified == lastModified) {
+                return known.hash;
+            }
+        }
+
+        String hash = sha256(source);
+        synchronized (sourceHashes) {
+            sourceHashes.put(path, new SourceHash(length, lastModified, hash));
+        }
+        return hash;
+    }
+
+    static String sha256(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return sha256(in);
+        }
+    }
+
+    static String sha256(InputStream in) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,62 @@
+package com.tejas.artifactgenerator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AutoCropperTest {
+
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 200;
+    private static final int MARGIN = 0xff101010;
+
+    @Test
+    public void uniformMarginsAreCroppedWithOnePixelSlack() {
+        int[] argb = framed(20, 30, 180, 150);
+
+        assertArrayEquals(new int[]{19, 29, 181, 151}, AutoCropper.findContentBounds(argb, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void singleNoisyLineInTheMarginDoesNotStopTheCrop() {
+        int[] argb = framed(20, 30, 180, 150);
+        for (int x = 40; x < 160; x += 2) {
+            argb[5 * WIDTH + x] = 0xffffffff;
+        }
+
+        assertArrayEquals(new int[]{19, 29, 181, 151}, AutoCropper.findContentBounds(argb, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void blankFrameIsKeptWhole() {
+        assertNull(AutoCropper.findContentBounds(framed(0, 0, 0, 0), WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void thinMarginsAreNotWorthACrop() {
+        assertNull(AutoCropper.findContentBounds(framed(2, 2, 198, 198), WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void tinyContentIsTreatedAsABadGuess() {
+        assertNull(AutoCropper.findContentBounds(framed(90, 90, 130, 130), WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void imagesTooSmallToJudgeAreKeptWhole() {
+        assertNull(AutoCropper.findContentBounds(new int[5 * 5], 5, 5));
+    }
+
+    // Flat margin around a checkerboard in [left, right) x [top, bottom)
+    private static int[] framed(int left, int top, int right, int bottom) {
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean content = x >= left && x < right && y >= top && y < bottom;
+                boolean light = (x / 4 + y / 4) % 2 == 0;
+                argb[y * WIDTH + x] = !content ? MARGIN : light ? 0xfff0f0f0 : 0xff202020;
+            }
+        }
+        return argb;
+    }
+}
@@ -0,0 +1,131 @@
+package com.tejas.artifactgenerator;
+
+import android.graphics.Rect;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Layout heuristics of {@link FieldExtractor} on small synthetic OCR results. {@link Rect}
+ * is a stub in local tests, so boxes are built by setting its public fields, which is all
+ * the extractor reads.
+ */
+public class FieldExtractorTest {
+
+    private static final int IMAGE_WIDTH = 1000;
+    private static final int IMAGE_HEIGHT = 2000;
+
+    private final FieldExtractor extractor = new FieldExtractor(Arrays.asList("SIS-\\d+", "QA-\\d+"));
+
+    @Test
+    public void idAndTitleOnTheSameLine() {
+        OcrResult.Line idLine = line("SIS-1234 - Login works", 40, 100, 500, 30);
+        OcrResult result = result(
+                block(idLine, line("Priority: High", 40, 140, 200, 20)));
+
+        FieldExtractor.Proposal proposal = extractor.extract(result);
+
+        assertEquals("SIS-1234", proposal.testCaseId);
+        assertEquals("Login works", proposal.title);
+        assertSame(idLine, proposal.idLine);
+        assertEquals(Collections.singletonList(idLine), proposal.titleLines);
+    }
+
+    @Test
+    public void titleOnASeparateTallerLine() {
+        OcrResult.Line idLine = line("sis-77", 40, 100, 100, 20);
+        OcrResult.Line title1 = line("Verify checkout with", 40, 130, 600, 40);
+        OcrResult.Line title2 = line("a saved card", 40, 175, 300, 40);
+        OcrResult result = result(
+                block(line("Menu", 0, 0, 80, 20)),
+                block(idLine),
+                block(title1, title2),
+                block(line("Created by tester", 40, 230, 300, 20)));
+
+        FieldExtractor.Proposal proposal = extractor.extract(result);
+
+        assertEquals("SIS-77", proposal.testCaseId);
+        assertEquals("Verify checkout with a saved card", proposal.title);
+        assertEquals(Arrays.asList(title1, title2), proposal.titleLines);
+    }
+
+    @Test
+    public void standaloneLabelTakesTheBlockBelow() {
+        OcrResult.Line first = line("User is registered", 40, 330, 300, 20);
+        OcrResult.Line second = line("App is installed", 40, 355, 300, 20);
+        OcrResult result = result(
+                block(line("QA-5 Place order", 40, 100, 400, 30)),
+                block(line("Preconditions", 40, 300, 200, 20)),
+                block(first, second, line("Steps", 40, 380, 100, 20)));
+
+        FieldExtractor.Proposal proposal = extractor.extract(result);
+
+        assertEquals("User is registered\nApp is installed", proposal.preconditions);
+        assertEquals(Arrays.asList(first, second), proposal.preconditionLines);
+    }
+
+    @Test
+    public void noIdLeavesIdAndTitleEmpty() {
+        OcrResult result = result(
+                block(line("Dashboard", 40, 100, 300, 40)),
+                block(line("Recent activity", 40, 160, 300, 20)));
+
+        FieldExtractor.Proposal proposal = extractor.extract(result);
+
+        assertNull(proposal.testCaseId);
+        assertNull(proposal.title);
+        assertNull(proposal.idLine);
+        assertTrue(proposal.titleLines.isEmpty());
+        assertNull(proposal.preconditions);
+    }
+
+    @Test
+    public void idMatchesWholeKeysOnly() {
+        assertEquals("SIS-12", extractor.findId("see sis-12 for details"));
+        assertNull(extractor.findId("XSIS-12"));
+        assertNull(extractor.findId("no id here"));
+        assertEquals("Login works", extractor.withoutId("SIS-12 \u2013 Login works"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyPatternListIsRejected() {
+        new FieldExtractor(Collections.emptyList());
+    }
+
+    private static OcrResult.Line line(String text, int left, int top, int width, int height) {
+        return new OcrResult.Line(text, rect(left, top, left + width, top + height), new ArrayList<>());
+    }
+
+    private static OcrResult.Block block(OcrResult.Line... lines) {
+        Rect box = rect(lines[0].box.left, lines[0].box.top, lines[0].box.right, lines[0].box.bottom);
+        StringBuilder text = new StringBuilder();
+        for (OcrResult.Line line : lines) {
+            box.left = Math.min(box.left, line.box.left);
+            box.top = Math.min(box.top, line.box.top);
+            box.right = Math.max(box.right, line.box.right);
+            box.bottom = Math.max(box.bottom, line.box.bottom);
+            text.append(line.text).append('\n');
+        }
+        return new OcrResult.Block(text.toString().trim(), box, Arrays.asList(lines));
+    }
+
+    private static Rect rect(int left, int top, int right, int bottom) {
+        Rect rect = new Rect();
+        rect.left = left;
+        rect.top = top;
+        rect.right = right;
+        rect.bottom = bottom;
+        return rect;
+    }
+
+    private static OcrResult result(OcrResult.Block... blocks) {
+        List<OcrResult.Block> list = Arrays.asList(blocks);
+        return new OcrResult(IMAGE_WIDTH, IMAGE_HEIGHT, list);
+    }
+}
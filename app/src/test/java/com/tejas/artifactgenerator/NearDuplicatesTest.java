@@ -0,0 +1,125 @@
+package com.tejas.artifactgenerator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class NearDuplicatesTest {
+
+    private static final int MAX = ImageFingerprint.MAX_DUPLICATE_DISTANCE;
+
+    private final Map<String, ImageFingerprint> fingerprints = new HashMap<>();
+
+    @Test
+    public void distanceCountsFlippedGradients() {
+        assertEquals(0, fingerprint(0, 0).distanceTo(fingerprint(0, 8)));
+        assertEquals(MAX, fingerprint(0, 0).distanceTo(fingerprint(MAX, 0)));
+        assertEquals(40, fingerprint(0, 0).distanceTo(fingerprint(40, 0)));
+    }
+
+    @Test
+    public void retakeWithinThresholdKeepsTheSharperInTheFirstSlot() {
+        fingerprints.put("blurry", fingerprint(0, 0));
+        fingerprints.put("other", fingerprint(60, 4));
+        fingerprints.put("sharp", fingerprint(MAX, 8));
+        SortedMap<Integer, List<String>> steps = steps(Arrays.asList("blurry", "other", "sharp"));
+
+        List<String> dropped = NearDuplicates.collapse(steps, fingerprints, false);
+
+        assertEquals(Collections.singletonList("blurry"), dropped);
+        assertEquals(Arrays.asList("sharp", "other"), steps.get(1));
+    }
+
+    @Test
+    public void differenceJustOverThresholdIsKept() {
+        fingerprints.put("first", fingerprint(0, 0));
+        fingerprints.put("second", fingerprint(MAX + 1, 8));
+        SortedMap<Integer, List<String>> steps = steps(Arrays.asList("first", "second"));
+
+        List<String> dropped = NearDuplicates.collapse(steps, fingerprints, false);
+
+        assertTrue(dropped.isEmpty());
+        assertEquals(Arrays.asList("first", "second"), steps.get(1));
+    }
+
+    @Test
+    public void acrossStepsOnlyWhenAskedAndNeverEmptyingAStep() {
+        fingerprints.put("login", fingerprint(0, 8));
+        fingerprints.put("login again", fingerprint(2, 0));
+        fingerprints.put("home", fingerprint(60, 4));
+
+        SortedMap<Integer, List<String>> withinStep = steps(Collections.singletonList("login"),
+                Arrays.asList("home", "login again"));
+        assertTrue(NearDuplicates.collapse(withinStep, fingerprints, false).isEmpty());
+
+        SortedMap<Integer, List<String>> acrossSteps = steps(Collections.singletonList("login"),
+                Arrays.asList("home", "login again"));
+        assertEquals(Collections.singletonList("login again"),
+                NearDuplicates.collapse(acrossSteps, fingerprints, true));
+        assertEquals(Collections.singletonList("home"), acrossSteps.get(2));
+
+        // The only image of a step stays, even when it repeats an earlier step
+        SortedMap<Integer, List<String>> lone = steps(Collections.singletonList("login"),
+                Collections.singletonList("login again"));
+        assertTrue(NearDuplicates.collapse(lone, fingerprints, true).isEmpty());
+    }
+
+    @Test
+    public void imagesWithoutFingerprintAreKept() {
+        fingerprints.put("sharp", fingerprint(0, 8));
+        SortedMap<Integer, List<String>> steps = steps(Arrays.asList("sharp", "unreadable", "unreadable copy"));
+
+        assertTrue(NearDuplicates.collapse(steps, fingerprints, true).isEmpty());
+        assertEquals(3, steps.get(1).size());
+    }
+
+    @SafeVarargs
+    private static SortedMap<Integer, List<String>> steps(List<String>... images) {
+        SortedMap<Integer, List<String>> steps = new TreeMap<>();
+        for (int i = 0; i < images.length; i++) {
+            steps.put(i + 1, new ArrayList<>(images[i]));
+        }
+        return steps;
+    }
+
+    /**
+     * A 34x32 gray image, two pixels per hash cell, whose cells brighten left to right so
+     * every hash bit is 0. Each flipped bit dims one cell below its left neighbour.
+     * detail adds a checkerboard inside each cell: it leaves the cell means, and so the
+     * hash, unchanged but raises the sharpness score.
+     */
+    private static ImageFingerprint fingerprint(int flippedBits, int detail) {
+        int[][] cells = new int[16][17];
+        for (int row = 0; row < 16; row++) {
+            for (int column = 0; column < 17; column++) {
+                cells[row][column] = 20 + 10 * column;
+            }
+        }
+        // Flipping bit c lowers cell c + 1; columns 3 apart never touch each other's bits
+        for (int i = 0; i < flippedBits; i++) {
+            int row = i % 16;
+            int column = 1 + 3 * (i / 16);
+            cells[row][column + 1] = cells[row][column] - 5;
+        }
+
+        int width = 34;
+        int height = 32;
+        int[] argb = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int gray = cells[y / 2][x / 2] + ((x + y) % 2 == 0 ? detail : -detail);
+                argb[y * width + x] = 0xff000000 | gray << 16 | gray << 8 | gray;
+            }
+        }
+        return ImageFingerprint.of(argb, width, height);
+    }
+}
@@ -0,0 +1,84 @@
+package com.tejas.artifactgenerator;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * Palette quantization and the indexed PNG written from it. The PNG is decoded with
+ * ImageIO, an independent decoder, so the round trip checks the file format as well.
+ */
+public class PaletteQuantizerTest {
+
+    @Test
+    public void fewColoursRoundTripLosslessly() throws Exception {
+        int width = 40;
+        int height = 30;
+        int[] colors = {0xffffff, 0x202020, 0x1976d2, 0xe53935, 0x43a047};
+        int[] argb = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                argb[y * width + x] = 0xff000000 | colors[(x / 7 + y / 5) % colors.length];
+            }
+        }
+
+        PaletteQuantizer.Result result = PaletteQuantizer.quantize(argb);
+        assertEquals(colors.length, result.palette.length);
+        for (int i = 0; i < argb.length; i++) {
+            assertEquals(argb[i] & 0xffffff, result.palette[result.indices[i] & 0xff]);
+        }
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(PalettePngEncoder.encode(result, width, height)));
+        assertEquals(width, decoded.getWidth());
+        assertEquals(height, decoded.getHeight());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(argb[y * width + x], decoded.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void mostCommonColoursWinThePalette() {
+        int common = PaletteQuantizer.MAX_COLORS;
+        int rare = 44;
+        int[] argb = new int[common * 10 + rare];
+        int pixel = 0;
+        for (int c = 0; c < common; c++) {
+            for (int repeat = 0; repeat < 10; repeat++) {
+                argb[pixel++] = 0xff000000 | commonColor(c);
+            }
+        }
+        for (int r = 0; r < rare; r++) {
+            // Lands in a bin of its own, one 15-bit step away from a common colour
+            argb[pixel++] = 0xff000000 | commonColor(r) + 0x080000;
+        }
+
+        PaletteQuantizer.Result result = PaletteQuantizer.quantize(argb);
+
+        assertEquals(PaletteQuantizer.MAX_COLORS, result.palette.length);
+        Set<Integer> palette = new HashSet<>();
+        for (int color : result.palette) {
+            palette.add(color);
+        }
+        for (int c = 0; c < common; c++) {
+            assertTrue(palette.contains(commonColor(c)));
+        }
+        // A rare colour falls back to its nearest entry, the common colour next to it
+        for (int r = 0; r < rare; r++) {
+            assertEquals(commonColor(r), result.palette[result.indices[common * 10 + r] & 0xff]);
+        }
+    }
+
+    // Distinct colours whose channels sit on 15-bit bin boundaries, so bin means are exact
+    private static int commonColor(int c) {
+        return (c % 8) * 32 << 16 | (c / 8 % 8) * 32 << 8 | (c / 64) * 32;
+    }
+}
@@ -0,0 +1,62 @@
+package com.tejas.artifactgenerator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SizeBudgetTest {
+
+    @Test
+    public void smallImagesKeepTheirSizeAndHandSlackToLargeOnes() {
+        long[] sizes = {10_000, 50_000, 400_000, 600_000};
+
+        long[] allowances = SizeBudget.allocate(sizes, 460_000);
+
+        assertEquals(10_000, allowances[0]);
+        assertEquals(50_000, allowances[1]);
+        assertEquals(200_000, allowances[2]);
+        assertEquals(200_000, allowances[3]);
+        assertEquals(460_000, SizeBudget.total(allowances));
+    }
+
+    @Test
+    public void budgetThatFitsKeepsEverySize() {
+        long[] sizes = {30_000, 70_000};
+
+        assertArrayEquals(sizes, SizeBudget.allocate(sizes, 1_000_000));
+    }
+
+    @Test
+    public void zeroBudgetFallsBackToTheFloor() {
+        long[] sizes = {4_000, 100_000, 300_000};
+
+        long[] allowances = SizeBudget.allocate(sizes, 0);
+
+        assertArrayEquals(new long[]{4_000, SizeBudget.MIN_IMAGE_BYTES, SizeBudget.MIN_IMAGE_BYTES}, allowances);
+    }
+
+    @Test
+    public void negativeBudgetNeverYieldsZeroAllowances() {
+        long available = SizeBudget.imageBytesAvailable(10 * 1024, 20);
+        assertTrue(available < 0);
+        long[] sizes = {1, 500_000};
+
+        long[] allowances = SizeBudget.allocate(sizes, available);
+
+        assertEquals(1, allowances[0]);
+        assertEquals(SizeBudget.MIN_IMAGE_BYTES, allowances[1]);
+        assertTrue(SizeBudget.total(allowances) > available);
+    }
+
+    @Test
+    public void tightBudgetIsOvershotOnlyByTheFloor() {
+        long[] sizes = {200_000, 200_000, 200_000};
+
+        long[] allowances = SizeBudget.allocate(sizes, 20_000);
+
+        for (long allowance : allowances) {
+            assertTrue(allowance >= SizeBudget.MIN_IMAGE_BYTES);
+        }
+        assertEquals(3 * SizeBudget.MIN_IMAGE_BYTES, SizeBudget.total(allowances));
+    }
+}
@@ -0,0 +1,129 @@
+package com.tejas.artifactgenerator;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Grid queries checked against a linear scan over the same boxes, plus the tie-breaks
+ * the overlay relies on.
+ */
+public class SpatialIndexTest {
+
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+
+    @Test
+    public void rectangleQueriesMatchALinearScan() {
+        Random random = new Random(1);
+        int[] boxes = randomBoxes(random, 3000);
+        SpatialIndex index = new SpatialIndex(WIDTH, HEIGHT, boxes);
+        int[] found = new int[index.size()];
+
+        for (int q = 0; q < 500; q++) {
+            // Some queries reach past the image edges
+            float left = random.nextFloat() * WIDTH - 100;
+            float top = random.nextFloat() * HEIGHT - 100;
+            float right = left + random.nextFloat() * 800;
+            float bottom = top + random.nextFloat() * 600;
+
+            int count = index.query(left, top, right, bottom, found);
+
+            int expected = 0;
+            for (int i = 0; i < boxes.length / 4; i++) {
+                if (boxes[i * 4] < right && left < boxes[i * 4 + 2]
+                        && boxes[i * 4 + 1] < bottom && top < boxes[i * 4 + 3]) {
+                    assertTrue("query " + q + " result " + expected, expected < count);
+                    assertEquals(i, found[expected++]);
+                }
+            }
+            assertEquals(expected, count);
+        }
+    }
+
+    @Test
+    public void nearestMatchesALinearScan() {
+        Random random = new Random(2);
+        int[] boxes = randomBoxes(random, 3000);
+        SpatialIndex index = new SpatialIndex(WIDTH, HEIGHT, boxes);
+
+        for (int q = 0; q < 2000; q++) {
+            float x = random.nextFloat() * WIDTH;
+            float y = random.nextFloat() * HEIGHT;
+            float radius = random.nextFloat() * 30;
+
+            int hit = index.nearest(x, y, radius);
+
+            float best = Float.MAX_VALUE;
+            for (int i = 0; i < boxes.length / 4; i++) {
+                float distance = distance(boxes, i, x, y);
+                if (distance <= radius * radius) {
+                    best = Math.min(best, distance);
+                }
+            }
+            if (best == Float.MAX_VALUE) {
+                assertEquals(-1, hit);
+            } else {
+                assertEquals(best, distance(boxes, hit, x, y), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void overlappingBoxesResolveToTheSmallest() {
+        int[] boxes = {
+                0, 0, 1000, 1000,
+                100, 100, 300, 150,
+                120, 110, 160, 140,
+        };
+        SpatialIndex index = new SpatialIndex(1000, 1000, boxes);
+
+        assertEquals(2, index.nearest(130, 120, 0));
+        assertEquals(1, index.nearest(200, 120, 0));
+        assertEquals(0, index.nearest(800, 800, 0));
+    }
+
+    @Test
+    public void missWithinRadiusPicksTheClosestBox() {
+        int[] boxes = {
+                100, 100, 200, 120,
+                100, 140, 200, 160,
+        };
+        SpatialIndex index = new SpatialIndex(1000, 1000, boxes);
+
+        assertEquals(0, index.nearest(150, 125, 20));
+        assertEquals(1, index.nearest(150, 136, 20));
+        assertEquals(-1, index.nearest(150, 400, 20));
+    }
+
+    @Test
+    public void emptyIndexFindsNothing() {
+        SpatialIndex index = new SpatialIndex(1000, 1000, new int[0]);
+
+        assertEquals(0, index.size());
+        assertEquals(-1, index.nearest(10, 10, 50));
+        assertEquals(0, index.query(0, 0, 1000, 1000, new int[0]));
+    }
+
+    // Word- to line-sized boxes, clipped to the image
+    private static int[] randomBoxes(Random random, int count) {
+        int[] boxes = new int[count * 4];
+        for (int i = 0; i < count; i++) {
+            int x = random.nextInt(WIDTH);
+            int y = random.nextInt(HEIGHT);
+            boxes[i * 4] = x;
+            boxes[i * 4 + 1] = y;
+            boxes[i * 4 + 2] = Math.min(WIDTH, x + 5 + random.nextInt(300));
+            boxes[i * 4 + 3] = Math.min(HEIGHT, y + 5 + random.nextInt(40));
+        }
+        return boxes;
+    }
+
+    private static float distance(int[] boxes, int i, float x, float y) {
+        float dx = Math.max(0, Math.max(boxes[i * 4] - x, x - boxes[i * 4 + 2]));
+        float dy = Math.max(0, Math.max(boxes[i * 4 + 1] - y, y - boxes[i * 4 + 3]));
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,54 @@
+package com.tejas.artifactgenerator.benchmarks;
+
+import com.tejas.artifactgenerator.ImageClassifier;
+import com.tejas.artifactgenerator.PalettePngEncoder;
+import com.tejas.artifactgenerator.PaletteQuantizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the screenshot path the transcoder adds per image: classification,
+ * palette quantization and the indexed PNG encode, at the two print widths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CodecSelectionBenchmark {
+
+    @Param({"450x600", "900x1200"})
+    public String resolution;
+
+    private int width;
+    private int height;
+    private int[] pixels;
+    private PaletteQuantizer.Result quantized;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] size = resolution.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+        BufferedImage capture = SyntheticFixtures.screenCapture(width, height, new Random(SyntheticFixtures.SEED));
+        pixels = capture.getRGB(0, 0, width, height, null, 0, width);
+        quantized = PaletteQuantizer.quantize(pixels);
+    }
+
+    @Benchmark
+    public boolean classify() {
+        return ImageClassifier.looksLikeUi(pixels, width, height);
+    }
+
+    @Benchmark
+    public PaletteQuantizer.Result quantize() {
+        return PaletteQuantizer.quantize(pixels);
+    }
+
+    @Benchmark
+    public byte[] encodePalettePng() throws IOException {
+        return PalettePngEncoder.encode(quantized, width, height);
+    }
+}
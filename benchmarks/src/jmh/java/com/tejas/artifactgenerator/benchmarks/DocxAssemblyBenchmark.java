@@ -0,0 +1,126 @@
+package com.tejas.artifactgenerator.benchmarks;
+
+import com.tejas.artifactgenerator.CoverPageTemplate;
+import com.tejas.artifactgenerator.DocxWriter;
+import org.apache.poi.util.Units;
+import org.apache.poi.xwpf.usermodel.*;
+import org.openjdk.jmh.annotations.*;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STBorder;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Document assembly from already-transcoded JPEGs: {@link DocxWriter} against the XWPF
+ * code generateWordDocument used before it. Image processing is excluded on purpose.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DocxAssemblyBenchmark {
+
+    @Param({"5", "20", "60"})
+    public int steps;
+
+    @Param({"1", "2"})
+    public int imagesPerStep;
+
+    @Param({"450x600", "900x1200"})
+    public String resolution;
+
+    private File workDir;
+    private File output;
+    private List<List<File>> stepImages;
+    private final Map<CoverPageTemplate.Field, String> coverValues = new EnumMap<>(CoverPageTemplate.Field.class);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] size = resolution.split("x");
+        workDir = SyntheticFixtures.createTempDir("docx-bench");
+        output = new File(workDir, "out.docx");
+        stepImages = SyntheticFixtures.stepImages(workDir, steps, imagesPerStep,
+                Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        coverValues.put(CoverPageTemplate.Field.TCERID, "SIS-12345");
+        coverValues.put(CoverPageTemplate.Field.TITLE, "Verify login with valid credentials");
+        coverValues.put(CoverPageTemplate.Field.PRECONDITIONS, "User is registered\nApp is installed");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SyntheticFixtures.deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public long docxWriter() throws IOException {
+        try (DocxWriter writer = new DocxWriter(new FileOutputStream(output))) {
+            writer.addCoverPage(coverValues);
+            writer.addPageBreak();
+            for (int step = 0; step < stepImages.size(); step++) {
+                writer.addHeading("Step " + (step + 1));
+                List<File> images = stepImages.get(step);
+                for (int i = 0; i < images.size(); i++) {
+                    if (i != 0 && i % 2 == 0) {
+                        writer.addPageBreak();
+                    }
+                    writer.addPicture(images.get(i), DocxWriter.PictureType.JPEG, "step_image.jpg",
+                            3 * DocxWriter.EMU_PER_INCH, 4 * DocxWriter.EMU_PER_INCH);
+                }
+                writer.addPageBreak();
+            }
+        }
+        return output.length();
+    }
+
+    @Benchmark
+    public long xwpfBaseline() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFTable table = document.createTable(7, 2);
+            table.setWidth("100%");
+            CoverPageTemplate.Field[] fields = CoverPageTemplate.Field.values();
+            for (int i = 0; i < fields.length; i++) {
+                table.getRow(i).getCell(0).setText(fields[i].label);
+                String value = coverValues.get(fields[i]);
+                table.getRow(i).getCell(1).setText(value != null ? value : "");
+            }
+            for (XWPFTableRow row : table.getRows()) {
+                for (XWPFTableCell cell : row.getTableCells()) {
+                    cell.getCTTc().addNewTcPr().addNewTcBorders().addNewBottom().setVal(STBorder.SINGLE);
+                }
+            }
+            document.createParagraph().setPageBreak(true);
+
+            for (int step = 0; step < stepImages.size(); step++) {
+                XWPFParagraph stepTitle = document.createParagraph();
+                stepTitle.setAlignment(ParagraphAlignment.LEFT);
+                XWPFRun stepRun = stepTitle.createRun();
+                stepRun.setBold(true);
+                stepRun.setFontSize(14);
+                stepRun.setText("Step " + (step + 1));
+
+                List<File> images = stepImages.get(step);
+                for (int i = 0; i < images.size(); i++) {
+                    if (i != 0 && i % 2 == 0) {
+                        document.createParagraph().setPageBreak(true);
+                    }
+                    XWPFParagraph imagePara = document.createParagraph();
+                    imagePara.setAlignment(ParagraphAlignment.CENTER);
+                    byte[] data = Files.readAllBytes(images.get(i).toPath());
+                    try (InputStream is = new ByteArrayInputStream(data)) {
+                        imagePara.createRun().addPicture(is, Document.PICTURE_TYPE_JPEG, "step_image.jpg",
+                                (int) (3.0 * Units.EMU_PER_INCH), (int) (4.0 * Units.EMU_PER_INCH));
+                    }
+                }
+                document.createParagraph().setPageBreak(true);
+            }
+
+            try (OutputStream out = new FileOutputStream(output)) {
+                document.write(out);
+            }
+        }
+        return output.length();
+    }
+}
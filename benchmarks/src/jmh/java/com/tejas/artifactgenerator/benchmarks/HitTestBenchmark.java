@@ -0,0 +1,97 @@
+package com.tejas.artifactgenerator.benchmarks;
+
+import com.tejas.artifactgenerator.SpatialIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rectangle hit-testing as OverlayView.selectBlocksInRect and the OverlayDialog tap
+ * handler do it: every block is scaled into view space, allocating a rectangle per
+ * block per event, then tested. The second variant maps the query into image space
+ * once instead, and the third also answers it from the SpatialIndex grid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HitTestBenchmark {
+
+    private static final int IMAGE_WIDTH = 4000;
+    private static final int IMAGE_HEIGHT = 3000;
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 2200;
+    private static final int QUERIES = 64;
+
+    @Param({"100", "1000", "5000"})
+    public int blockCount;
+
+    private int[][] blocks;
+    // {left, top, right, bottom} drag rectangles in view coordinates
+    private float[][] drags;
+    private float scaleX;
+    private float scaleY;
+    private SpatialIndex index;
+    private int[] indexHits;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        blocks = SyntheticFixtures.blockRects(blockCount, IMAGE_WIDTH, IMAGE_HEIGHT);
+        scaleX = VIEW_WIDTH / (float) IMAGE_WIDTH;
+        scaleY = VIEW_HEIGHT / (float) IMAGE_HEIGHT;
+        int[] packed = new int[blockCount * 4];
+        for (int i = 0; i < blockCount; i++) {
+            System.arraycopy(blocks[i], 0, packed, i * 4, 4);
+        }
+        index = new SpatialIndex(IMAGE_WIDTH, IMAGE_HEIGHT, packed);
+        indexHits = new int[blockCount];
+
+        Random random = new Random(SyntheticFixtures.SEED);
+        drags = new float[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            float left = random.nextFloat() * VIEW_WIDTH;
+            float top = random.nextFloat() * VIEW_HEIGHT;
+            drags[i] = new float[]{left, top, left + random.nextFloat() * 300, top + random.nextFloat() * 200};
+        }
+    }
+
+    @Benchmark
+    public void scaleEveryBlock(Blackhole blackhole) {
+        for (float[] drag : drags) {
+            int hits = 0;
+            for (int[] block : blocks) {
+                float[] scaled = {block[0] * scaleX, block[1] * scaleY, block[2] * scaleX, block[3] * scaleY};
+                if (scaled[0] < drag[2] && drag[0] < scaled[2] && scaled[1] < drag[3] && drag[1] < scaled[3]) {
+                    hits++;
+                }
+            }
+            blackhole.consume(hits);
+        }
+    }
+
+    @Benchmark
+    public void mapQueryOnce(Blackhole blackhole) {
+        for (float[] drag : drags) {
+            float left = drag[0] / scaleX;
+            float top = drag[1] / scaleY;
+            float right = drag[2] / scaleX;
+            float bottom = drag[3] / scaleY;
+            int hits = 0;
+            for (int[] block : blocks) {
+                if (block[0] < right && left < block[2] && block[1] < bottom && top < block[3]) {
+                    hits++;
+                }
+            }
+            blackhole.consume(hits);
+        }
+    }
+
+    @Benchmark
+    public void gridIndex(Blackhole blackhole) {
+        for (float[] drag : drags) {
+            blackhole.consume(index.query(drag[0] / scaleX, drag[1] / scaleY,
+                    drag[2] / scaleX, drag[3] / scaleY, indexHits));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.tejas.artifactgenerator.benchmarks;
+
+import com.tejas.artifactgenerator.ImageSizing;
+import com.tejas.artifactgenerator.SizeBudget;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizing and budget maths from the transcoder, plus a JVM analogue of its
+ * decode -> scale -> compress path (ImageIO subsampling standing in for inSampleSize)
+ * compared with decoding at full resolution first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImageScalingBenchmark {
+
+    @Param({"1600x1200", "4000x3000"})
+    public String sourceResolution;
+
+    @Param({"false", "true"})
+    public boolean wantsTwoImgs;
+
+    private byte[] sourceJpeg;
+    private int[][] sourceSizes;
+    private long[] payloadSizes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] size = sourceResolution.split("x");
+        Random random = new Random(SyntheticFixtures.SEED);
+        sourceJpeg = SyntheticFixtures.encodeJpeg(SyntheticFixtures.screenCapture(
+                Integer.parseInt(size[0]), Integer.parseInt(size[1]), random), 0.9f);
+
+        sourceSizes = new int[256][];
+        for (int i = 0; i < sourceSizes.length; i++) {
+            sourceSizes[i] = new int[]{320 + random.nextInt(4000), 240 + random.nextInt(3000)};
+        }
+        payloadSizes = new long[60];
+        for (int i = 0; i < payloadSizes.length; i++) {
+            payloadSizes[i] = 40_000 + random.nextInt(400_000);
+        }
+    }
+
+    @Benchmark
+    public void targetSizeMath(Blackhole blackhole) {
+        int targetWidth = ImageSizing.targetPixelWidth(wantsTwoImgs);
+        for (int[] source : sourceSizes) {
+            int width = ImageSizing.clampedTargetWidth(source[0], targetWidth);
+            blackhole.consume(ImageSizing.scaledHeight(source[0], source[1], width));
+            blackhole.consume(ImageSizing.computeSampleSize(source[0], width));
+        }
+    }
+
+    @Benchmark
+    public long[] budgetAllocation() {
+        long available = SizeBudget.imageBytesAvailable(10L * 1024 * 1024, payloadSizes.length);
+        return SizeBudget.allocate(payloadSizes, available);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public byte[] subsampledDecodeScaleCompress() throws IOException {
+        ImageReader reader = ImageIO.getImageReadersByFormatName("jpeg").next();
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(sourceJpeg))) {
+            reader.setInput(in);
+            int sourceWidth = reader.getWidth(0);
+            int sourceHeight = reader.getHeight(0);
+            int targetWidth = ImageSizing.clampedTargetWidth(sourceWidth, ImageSizing.targetPixelWidth(wantsTwoImgs));
+            int sampleSize = ImageSizing.computeSampleSize(sourceWidth, targetWidth);
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(sampleSize, sampleSize, 0, 0);
+            BufferedImage sampled = reader.read(0, param);
+            return scaleAndCompress(sampled, targetWidth, ImageSizing.scaledHeight(sourceWidth, sourceHeight, targetWidth));
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public byte[] fullDecodeScaleCompress() throws IOException {
+        BufferedImage original = ImageIO.read(new ByteArrayInputStream(sourceJpeg));
+        int targetWidth = ImageSizing.clampedTargetWidth(original.getWidth(), ImageSizing.targetPixelWidth(wantsTwoImgs));
+        return scaleAndCompress(original, targetWidth,
+                ImageSizing.scaledHeight(original.getWidth(), original.getHeight(), targetWidth));
+    }
+
+    private static byte[] scaleAndCompress(BufferedImage source, int width, int height) throws IOException {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, width, height, null);
+        g.dispose();
+        return SyntheticFixtures.encodeJpeg(scaled, 0.4f);
+    }
+}
@@ -0,0 +1,159 @@
+package com.tejas.artifactgenerator.benchmarks;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic stand-ins for tester captures and OCR output. Everything is derived
+ * from a seed so runs on different machines measure the same inputs.
+ */
+final class SyntheticFixtures {
+
+    static final long SEED = 42;
+
+    private SyntheticFixtures() {
+    }
+
+    static File createTempDir(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Screen-like frame: flat panels, a status bar and rows of text, plus a little
+     * sensor noise so JPEG sizes resemble real photos of monitors.
+     */
+    static BufferedImage screenCapture(int width, int height, Random random) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setColor(new Color(0xF4F6F8));
+        g.fillRect(0, 0, width, height);
+        g.setColor(new Color(0x263238));
+        g.fillRect(0, 0, width, height / 20);
+
+        int fontSize = Math.max(10, height / 60);
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, fontSize));
+        g.setColor(new Color(0x212121));
+        for (int y = height / 10; y < height; y += fontSize * 2) {
+            g.drawString("SIS-" + (1000 + random.nextInt(9000)) + " Verify field " + random.nextInt(100)
+                    + " accepts valid input and shows confirmation", width / 20, y);
+        }
+        g.dispose();
+
+        for (int i = 0; i < width * height / 50; i++) {
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            int rgb = image.getRGB(x, y);
+            int delta = random.nextInt(16) - 8;
+            image.setRGB(x, y, clampChannel((rgb >> 16) & 0xFF, delta) << 16
+                    | clampChannel((rgb >> 8) & 0xFF, delta) << 8
+                    | clampChannel(rgb & 0xFF, delta));
+        }
+        return image;
+    }
+
+    private static int clampChannel(int value, int delta) {
+        return Math.max(0, Math.min(255, value + delta));
+    }
+
+    static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    // N steps x M images, written as JPEG files the way the transcode cache stages them
+    static List<List<File>> stepImages(File dir, int steps, int imagesPerStep, int width, int height)
+            throws IOException {
+        Random random = new Random(SEED);
+        // A handful of distinct frames is enough; real payloads differ only in content
+        List<byte[]> frames = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            frames.add(encodeJpeg(screenCapture(width, height, random), 0.4f));
+        }
+
+        List<List<File>> result = new ArrayList<>();
+        int index = 0;
+        for (int step = 0; step < steps; step++) {
+            List<File> images = new ArrayList<>();
+            for (int i = 0; i < imagesPerStep; i++) {
+                File file = new File(dir, "step" + step + "_" + i + ".jpg");
+                Files.write(file.toPath(), frames.get(index++ % frames.size()));
+                images.add(file);
+            }
+            result.add(images);
+        }
+        return result;
+    }
+
+    // Text shaped like ML Kit blocks from a test management screen, one block per entry
+    static List<String> ocrBlocks(int count, double idRatio) {
+        Random random = new Random(SEED);
+        String[] words = {"Verify", "login", "with", "valid", "credentials", "Priority", "High",
+                "Status", "Draft", "Owner", "Expected", "result", "dashboard", "loads", "Steps"};
+        List<String> blocks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder block = new StringBuilder();
+            if (random.nextDouble() < idRatio) {
+                block.append(random.nextBoolean() ? "SIS-" : "sis-").append(100 + random.nextInt(90000)).append(' ');
+            }
+            int wordCount = 2 + random.nextInt(10);
+            for (int w = 0; w < wordCount; w++) {
+                block.append(words[random.nextInt(words.length)]).append(w % 5 == 4 ? '\n' : ' ');
+            }
+            blocks.add(block.toString().trim());
+        }
+        return blocks;
+    }
+
+    // Block bounding boxes {left, top, right, bottom} laid out in rows across a camera frame
+    static int[][] blockRects(int count, int imageWidth, int imageHeight) {
+        Random random = new Random(SEED);
+        int[][] rects = new int[count][];
+        int rows = Math.max(1, (int) Math.sqrt(count * 2.0));
+        int rowHeight = imageHeight / rows;
+        for (int i = 0; i < count; i++) {
+            int row = i % rows;
+            int left = random.nextInt(Math.max(1, imageWidth - 200));
+            int top = row * rowHeight + random.nextInt(Math.max(1, rowHeight / 4));
+            int width = 40 + random.nextInt(400);
+            int height = Math.max(8, rowHeight / 2);
+            rects[i] = new int[]{left, top, Math.min(imageWidth, left + width), Math.min(imageHeight, top + height)};
+        }
+        return rects;
+    }
+}
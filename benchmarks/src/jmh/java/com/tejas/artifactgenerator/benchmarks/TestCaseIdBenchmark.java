@@ -0,0 +1,49 @@
+package com.tejas.artifactgenerator.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Test case ID lookup over OCR block text, as OverlayDialog.extractTestCaseId does it
+ * (compiling the pattern on every call) and with the pattern compiled once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TestCaseIdBenchmark {
+
+    private static final Pattern TEST_CASE_ID = Pattern.compile("SIS-\\d+", Pattern.CASE_INSENSITIVE);
+
+    @Param({"50", "500"})
+    public int blockCount;
+
+    private List<String> blocks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        blocks = SyntheticFixtures.ocrBlocks(blockCount, 0.1);
+    }
+
+    @Benchmark
+    public void compilePerCall(Blackhole blackhole) {
+        for (String text : blocks) {
+            Pattern pattern = Pattern.compile("SIS-\\d+", Pattern.CASE_INSENSITIVE);
+            Matcher matcher = pattern.matcher(text);
+            blackhole.consume(matcher.find() ? matcher.group() : "Unknown-ID");
+        }
+    }
+
+    @Benchmark
+    public void precompiled(Blackhole blackhole) {
+        Matcher matcher = TEST_CASE_ID.matcher("");
+        for (String text : blocks) {
+            matcher.reset(text);
+            blackhole.consume(matcher.find() ? matcher.group() : "Unknown-ID");
+        }
+    }
+}